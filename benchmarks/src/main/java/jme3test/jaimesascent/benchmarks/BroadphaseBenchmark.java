@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package jme3test.jaimesascent.benchmarks;
+
+import com.jme3.bullet.PhysicsSpace;
+import com.jme3.bullet.PhysicsSpace.BroadphaseType;
+import com.jme3.bullet.collision.shapes.BoxCollisionShape;
+import com.jme3.bullet.collision.shapes.SphereCollisionShape;
+import com.jme3.bullet.objects.PhysicsRigidBody;
+import com.jme3.math.FastMath;
+import com.jme3.math.Vector3f;
+import com.jme3.system.NativeLibraryLoader;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * One physics step of bouncing balls and moving kinematic platforms in a
+ * walled arena about the size of the labyrinth, for each broadphase. The
+ * bodies and their contacts are the same for every broadphase, so the
+ * difference between the runs is the cost of finding the pairs. The sweep
+ * broadphases get the arena, padded like SceneState pads the level, as world
+ * bounds.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BroadphaseBenchmark {
+
+    private static final float TIME_STEP = 1f / 60f;
+    private static final float ARENA = 30f;
+    private static final int PLATFORMS = 32;
+
+    @Param({"DBVT", "AXIS_SWEEP_3", "AXIS_SWEEP_3_32"})
+    public BroadphaseType broadphase;
+
+    @Param({"64", "512"})
+    public int balls;
+
+    private PhysicsSpace space;
+    private PhysicsRigidBody[] platforms;
+    private Vector3f[] platformStarts;
+    private float time = 0f;
+    private final Vector3f location = new Vector3f();
+
+    @Setup
+    public void setup() {
+        NativeLibraryLoader.loadNativeLibrary("bulletjme", true);
+        space = new PhysicsSpace(new Vector3f(-ARENA - 10f, -30f, -ARENA - 10f),
+                new Vector3f(ARENA + 10f, ARENA + 10f, ARENA + 10f), broadphase);
+
+        // floor, walls and ceiling
+        addStatic(new Vector3f(ARENA, 1f, ARENA), new Vector3f(0, -1f, 0));
+        addStatic(new Vector3f(ARENA, 1f, ARENA), new Vector3f(0, ARENA + 1f, 0));
+        addStatic(new Vector3f(1f, ARENA, ARENA), new Vector3f(-ARENA - 1f, ARENA / 2, 0));
+        addStatic(new Vector3f(1f, ARENA, ARENA), new Vector3f(ARENA + 1f, ARENA / 2, 0));
+        addStatic(new Vector3f(ARENA, ARENA, 1f), new Vector3f(0, ARENA / 2, -ARENA - 1f));
+        addStatic(new Vector3f(ARENA, ARENA, 1f), new Vector3f(0, ARENA / 2, ARENA + 1f));
+
+        Random random = new Random(42);
+        BoxCollisionShape platform = new BoxCollisionShape(2f, 0.25f, 2f);
+        platforms = new PhysicsRigidBody[PLATFORMS];
+        platformStarts = new Vector3f[PLATFORMS];
+        for (int i = 0; i < PLATFORMS; i++) {
+            platforms[i] = new PhysicsRigidBody(platform, 1f);
+            platforms[i].setKinematic(true);
+            platformStarts[i] = randomPoint(random, 4f);
+            platforms[i].setPhysicsLocation(platformStarts[i]);
+            space.addCollisionObject(platforms[i]);
+        }
+
+        SphereCollisionShape ball = new SphereCollisionShape(0.9f);
+        for (int i = 0; i < balls; i++) {
+            PhysicsRigidBody body = new PhysicsRigidBody(ball, 400f);
+            body.setRestitution(1f);
+            body.setEnableSleep(false);
+            body.setPhysicsLocation(randomPoint(random, 2f));
+            body.setLinearVelocity(new Vector3f(random.nextFloat() - 0.5f, 0, random.nextFloat() - 0.5f).multLocal(20f));
+            space.addCollisionObject(body);
+        }
+
+        // let the balls spread out
+        for (int i = 0; i < 120; i++) {
+            step();
+        }
+    }
+
+    @Benchmark
+    public PhysicsSpace step() {
+        time += TIME_STEP;
+        for (int i = 0; i < PLATFORMS; i++) {
+            location.set(platformStarts[i]).addLocal(0, 2f * FastMath.sin(time + i), 0);
+            platforms[i].setPhysicsLocation(location);
+        }
+        space.update(TIME_STEP, 1);
+        return space;
+    }
+
+    private void addStatic(Vector3f halfExtents, Vector3f location) {
+        PhysicsRigidBody body = new PhysicsRigidBody(new BoxCollisionShape(halfExtents), PhysicsRigidBody.massForStatic);
+        body.setPhysicsLocation(location);
+        space.addCollisionObject(body);
+    }
+
+    private static Vector3f randomPoint(Random random, float margin) {
+        return new Vector3f((random.nextFloat() * 2f - 1f) * (ARENA - margin),
+                margin + random.nextFloat() * (ARENA - 2f * margin),
+                (random.nextFloat() * 2f - 1f) * (ARENA - margin));
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package jme3test.jaimesascent.benchmarks;
+
+import com.jme3.app.SimpleApplication;
+import com.jme3.app.state.AppState;
+import com.jme3.system.AppSettings;
+import com.jme3.system.JmeContext;
+import java.util.concurrent.CountDownLatch;
+import jme3test.jaimesascent.ui.LemurGuiStyle;
+
+/**
+ * Headless application with the game's Lemur style, for benchmarks of GUI
+ * code. Nothing is attached to its scene, so the benchmark thread can build
+ * and lay out GUI nodes while the application idles on its own thread.
+ */
+public class HeadlessGui extends SimpleApplication {
+
+    private final CountDownLatch initialized = new CountDownLatch(1);
+
+    private HeadlessGui() {
+        super((AppState[]) null);
+    }
+
+    /**
+     * @return a started application, once Lemur is initialized
+     */
+    public static HeadlessGui launch() throws InterruptedException {
+        HeadlessGui app = new HeadlessGui();
+        AppSettings settings = new AppSettings(true);
+        settings.setAudioRenderer(null);
+        app.setSettings(settings);
+        app.setShowSettings(false);
+        app.start(JmeContext.Type.Headless);
+        app.initialized.await();
+        return app;
+    }
+
+    @Override
+    public void simpleInitApp() {
+        LemurGuiStyle.initialize(this);
+        initialized.countDown();
+    }
+}
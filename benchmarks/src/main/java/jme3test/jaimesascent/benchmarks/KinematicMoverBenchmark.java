@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package jme3test.jaimesascent.benchmarks;
+
+import com.jme3.bullet.collision.shapes.BoxCollisionShape;
+import com.jme3.bullet.control.RigidBodyControl;
+import com.jme3.math.Vector3f;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Node;
+import com.jme3.scene.shape.Box;
+import com.jme3.system.NativeLibraryLoader;
+import java.util.concurrent.TimeUnit;
+import jme3test.jaimesascent.KinematicMovers;
+import jme3test.jaimesascent.PlatformControl;
+import jme3test.jaimesascent.PropellerControl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * One frame with one physics step of level machinery: a PlatformControl or
+ * PropellerControl per spatial against a single KinematicMovers loop. Half of
+ * the movers are platforms, half propellers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KinematicMoverBenchmark {
+
+    private static final float TPF = 1f / 60f;
+
+    @Param({"8", "1000", "10000"})
+    public int count;
+
+    private Node controlScene;
+    private PlatformControl[] platformControls;
+    private PropellerControl[] propellerControls;
+
+    private Node moverScene;
+    private KinematicMovers movers;
+
+    @Setup
+    public void setup() {
+        NativeLibraryLoader.loadNativeLibrary("bulletjme", true);
+        Box box = new Box(1, 0.1f, 1);
+
+        controlScene = new Node("Controls");
+        platformControls = new PlatformControl[count / 2];
+        propellerControls = new PropellerControl[count - count / 2];
+        for (int i = 0; i < count; i++) {
+            Node parent = new Node("Mover." + i);
+            parent.setLocalTranslation(i, 0, 0);
+            Geometry geometry = new Geometry("Mover", box);
+            parent.attachChild(geometry);
+            controlScene.attachChild(parent);
+
+            geometry.addControl(new RigidBodyControl(new BoxCollisionShape(1, 0.1f, 1), 0));
+            geometry.getControl(RigidBodyControl.class).setKinematic(true);
+            if (i < platformControls.length) {
+                platformControls[i] = new PlatformControl();
+                geometry.addControl(platformControls[i]);
+            } else {
+                propellerControls[i - platformControls.length] = new PropellerControl(Vector3f.UNIT_Z);
+                geometry.addControl(propellerControls[i - platformControls.length]);
+            }
+        }
+        controlScene.updateGeometricState();
+
+        moverScene = new Node("Movers");
+        movers = new KinematicMovers();
+        for (int i = 0; i < count; i++) {
+            Node parent = new Node("Mover." + i);
+            parent.setLocalTranslation(i, 0, 0);
+            Geometry geometry = new Geometry("Mover", box);
+            parent.attachChild(geometry);
+            moverScene.attachChild(parent);
+
+            if (i < count / 2) {
+                movers.addPlatform(geometry, Vector3f.UNIT_Y, 1f, 2f);
+            } else {
+                movers.addPropeller(geometry, Vector3f.UNIT_Z, 1f);
+            }
+        }
+        moverScene.updateGeometricState();
+
+        // first frame resolves the world transforms
+        controls();
+        movers();
+    }
+
+    @Benchmark
+    public Node controls() {
+        controlScene.updateLogicalState(TPF);
+        for (PlatformControl control : platformControls) {
+            control.prePhysicsTick(null, TPF);
+        }
+        for (PropellerControl control : propellerControls) {
+            control.prePhysicsTick(null, TPF);
+        }
+        return controlScene;
+    }
+
+    @Benchmark
+    public Node movers() {
+        movers.update(TPF);
+        movers.prePhysicsTick(null, TPF);
+        return moverScene;
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package jme3test.jaimesascent.benchmarks;
+
+import com.jme3.math.Vector3f;
+import com.simsilica.lemur.Container;
+import com.simsilica.lemur.Panel;
+import com.simsilica.lemur.core.GuiControl;
+import java.util.concurrent.TimeUnit;
+import jme3test.jaimesascent.ui.MyLayout;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * MyLayout passes over a container of panels that all share one alignment.
+ * A relayout follows a resolution change, so every child is resized and
+ * positioned again; a move changes the position of one child and lays out
+ * what that dirtied. Run with -prof gc for the allocation per pass.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LayoutBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Tree {
+
+        @Param({"10", "100", "10000"})
+        public int children;
+
+        @Param
+        public MyLayout.Alignment alignment;
+
+        private HeadlessGui app;
+        private MyLayout.RootPane rootPane;
+        private MyLayout layout;
+        private Panel[] panels;
+        private final Vector3f[] positions = {new Vector3f(10, 20, 1), new Vector3f(30, 40, 1)};
+        private int move;
+
+        @Setup
+        public void setup() throws InterruptedException {
+            app = HeadlessGui.launch();
+            rootPane = MyLayout.onCreateRootPane(new Vector3f(1280, 720, 1), new Vector3f(1024, 576, 1));
+            layout = new MyLayout(rootPane);
+            Container root = new Container();
+            root.setPreferredSize(rootPane.getWindow().clone());
+            root.setLayout(layout);
+
+            panels = new Panel[children];
+            for (int i = 0; i < children; i++) {
+                panels[i] = new Panel();
+                panels[i].setPreferredSize(new Vector3f(40, 20, 0));
+                root.addChild(panels[i], alignment, i % 2 == 0);
+                layout.setAttribute(MyLayout.POSITION, panels[i], new Vector3f(i % 100 * 10, i / 100 * 5 % 500, 1));
+            }
+            root.getControl(GuiControl.class).setSize(rootPane.getWindow());
+        }
+
+        @TearDown
+        public void tearDown() {
+            app.stop(true);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Pane {
+
+        private final MyLayout.RootPane rootPane = MyLayout.onCreateRootPane(
+                new Vector3f(1280, 720, 1), new Vector3f(1024, 576, 1));
+    }
+
+    @Benchmark
+    public MyLayout relayout(Tree tree) {
+        // flips between two window widths, so the scale factor always changes
+        tree.rootPane.getWindow().x = tree.rootPane.getWindow().x == 1280 ? 1920 : 1280;
+        tree.layout.reshape(null, null);
+        return tree.layout;
+    }
+
+    @Benchmark
+    public MyLayout move(Tree tree) {
+        final int index = tree.move++ % tree.children;
+        tree.layout.setAttribute(MyLayout.POSITION, tree.panels[index], tree.positions[tree.move & 1]);
+        tree.layout.reshape(null, null);
+        return tree.layout;
+    }
+
+    @Benchmark
+    public Vector3f scaleFactor(Pane pane) {
+        return pane.rootPane.getScaleFactor();
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package jme3test.jaimesascent.benchmarks;
+
+import com.jme3.app.SimpleApplication;
+import com.jme3.app.state.AppState;
+import com.jme3.bullet.BulletAppState;
+import com.jme3.bullet.BulletAppState.ThreadingType;
+import com.jme3.system.AppSettings;
+import com.jme3.system.JmeContext;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import jme3test.jaimesascent.SceneState;
+
+/**
+ * Headless benchmark comparing the frame time of the labyrinth scene with the
+ * physics space stepped on the render thread and on its own thread.
+ */
+public class PhysicsThreadingBenchmark extends SimpleApplication {
+
+    private static final int WARMUP_FRAMES = 600;
+    private static final int MEASURED_FRAMES = 6000;
+
+    private final ThreadingType threadingType;
+    private final long[] frameTimes = new long[MEASURED_FRAMES];
+    private final CountDownLatch finished = new CountDownLatch(1);
+
+    private int frame = 0;
+    private long lastFrame;
+
+    public PhysicsThreadingBenchmark(ThreadingType threadingType) {
+        super((AppState[]) null);
+        this.threadingType = threadingType;
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        for (ThreadingType type : ThreadingType.values()) {
+            PhysicsThreadingBenchmark benchmark = new PhysicsThreadingBenchmark(type);
+            AppSettings settings = new AppSettings(true);
+            settings.setAudioRenderer(null);
+            // the headless context caps unset frame rates at 60
+            settings.setFrameRate(Integer.MAX_VALUE);
+            benchmark.setSettings(settings);
+            benchmark.setShowSettings(false);
+            benchmark.start(JmeContext.Type.Headless);
+            benchmark.finished.await();
+            benchmark.report();
+        }
+    }
+
+    @Override
+    public void simpleInitApp() {
+        BulletAppState bulletAppState = new BulletAppState();
+        bulletAppState.setThreadingType(threadingType);
+        stateManager.attach(new SceneState(bulletAppState));
+        stateManager.attach(bulletAppState);
+    }
+
+    @Override
+    public void simpleUpdate(float tpf) {
+        long now = System.nanoTime();
+        if (frame >= WARMUP_FRAMES) {
+            frameTimes[frame - WARMUP_FRAMES] = now - lastFrame;
+        }
+        lastFrame = now;
+        if (++frame == WARMUP_FRAMES + MEASURED_FRAMES) {
+            stop();
+        }
+    }
+
+    @Override
+    public void destroy() {
+        super.destroy();
+        finished.countDown();
+    }
+
+    private void report() {
+        long[] sorted = frameTimes.clone();
+        Arrays.sort(sorted);
+        double mean = Arrays.stream(sorted).average().orElse(0) / 1e6;
+        System.out.printf("%-10s frames=%d mean=%.3fms p50=%.3fms p99=%.3fms max=%.3fms%n",
+                threadingType, MEASURED_FRAMES, mean,
+                sorted[MEASURED_FRAMES / 2] / 1e6,
+                sorted[MEASURED_FRAMES * 99 / 100] / 1e6,
+                sorted[MEASURED_FRAMES - 1] / 1e6);
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) 2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package jme3test.jaimesascent.benchmarks;
+
+import com.jme3.asset.AssetManager;
+import com.jme3.bounding.BoundingBox;
+import com.jme3.bullet.PhysicsSpace;
+import com.jme3.bullet.collision.PhysicsRayTestResult;
+import com.jme3.bullet.collision.shapes.CapsuleCollisionShape;
+import com.jme3.bullet.collision.shapes.SphereCollisionShape;
+import com.jme3.bullet.objects.PhysicsRigidBody;
+import com.jme3.math.Vector3f;
+import com.jme3.scene.Node;
+import com.jme3.scene.Spatial;
+import com.jme3.system.JmeSystem;
+import com.jme3.system.NativeLibraryLoader;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import jme3test.jaimesascent.CollisionShapeCache;
+import jme3test.jaimesascent.StaticChunks;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * One physics step of wrecking balls and character capsules bouncing around
+ * the labyrinth statics. A cell size of 0 is the single mesh shape, anything
+ * else the statics split into StaticChunks of that size. Nothing sleeps, so
+ * every step runs the narrowphase for every body touching the level.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StaticsCollisionBenchmark {
+
+    private static final float TIME_STEP = 1f / 60f;
+
+    @Param({"0", "4", "8"})
+    public float cellSize;
+
+    @Param({"1", "16"})
+    public int balls;
+
+    private PhysicsSpace space;
+    private PhysicsRigidBody[] bodies;
+    private Vector3f[] starts;
+
+    @Setup
+    public void setup() {
+        NativeLibraryLoader.loadNativeLibrary("bulletjme", true);
+        AssetManager assetManager = JmeSystem.newAssetManager(
+                Thread.currentThread().getContextClassLoader().getResource("com/jme3/asset/Desktop.cfg"));
+        Node scene = (Node) assetManager.loadModel("Scenes/labyrinth.j3o");
+        scene.updateGeometricState();
+        Spatial statics = scene.getChild("Statics");
+
+        space = new PhysicsSpace(PhysicsSpace.BroadphaseType.DBVT);
+        if (cellSize == 0) {
+            PhysicsRigidBody body = new PhysicsRigidBody(
+                    CollisionShapeCache.createMeshShape(statics, "Scenes/labyrinth.j3o"), PhysicsRigidBody.massForStatic);
+            body.setPhysicsLocation(statics.getWorldTranslation());
+            body.setPhysicsRotation(statics.getWorldRotation());
+            space.addCollisionObject(body);
+        } else {
+            new StaticChunks(statics, cellSize).addToSpace(space);
+        }
+
+        // balls plus a capsule per four balls, dropped onto random spots of
+        // the level
+        int characters = Math.max(1, balls / 4);
+        bodies = new PhysicsRigidBody[balls + characters];
+        starts = new Vector3f[bodies.length];
+        SphereCollisionShape ball = new SphereCollisionShape(0.9f);
+        CapsuleCollisionShape capsule = new CapsuleCollisionShape(0.4f, 1.7f);
+        BoundingBox bounds = (BoundingBox) statics.getWorldBound();
+        Random random = new Random(42);
+        for (int i = 0; i < bodies.length; i++) {
+            if (i < balls) {
+                bodies[i] = new PhysicsRigidBody(ball, 400f);
+                bodies[i].setRestitution(1);
+            } else {
+                bodies[i] = new PhysicsRigidBody(capsule, 1f);
+                bodies[i].setAngularFactor(0);
+            }
+            bodies[i].setEnableSleep(false);
+            starts[i] = findSurface(bounds, random).addLocal(0, 2f, 0);
+            reset(i);
+            space.addCollisionObject(bodies[i]);
+        }
+
+        // let the bodies reach the level
+        for (int i = 0; i < 120; i++) {
+            step();
+        }
+    }
+
+    @Benchmark
+    public PhysicsSpace step() {
+        space.update(TIME_STEP, 1);
+        for (int i = 0; i < bodies.length; i++) {
+            if (bodies[i].getPhysicsLocation(null).y < -10) {
+                reset(i);
+            }
+        }
+        return space;
+    }
+
+    private Vector3f findSurface(BoundingBox bounds, Random random) {
+        while (true) {
+            Vector3f from = bounds.getMin(null).addLocal(random.nextFloat() * bounds.getXExtent() * 2,
+                    bounds.getYExtent() * 2 + 1, random.nextFloat() * bounds.getZExtent() * 2);
+            Vector3f to = from.subtract(0, bounds.getYExtent() * 2 + 2, 0);
+            List<PhysicsRayTestResult> hits = space.rayTest(from, to);
+            if (!hits.isEmpty()) {
+                return from.interpolateLocal(to, hits.get(0).getHitFraction());
+            }
+        }
+    }
+
+    private void reset(int index) {
+        bodies[index].setPhysicsLocation(starts[index]);
+        bodies[index].setLinearVelocity(new Vector3f((index % 3 - 1) * 2f, 0, (index % 2) * 4f - 2f));
+        bodies[index].setAngularVelocity(Vector3f.ZERO);
+    }
+}
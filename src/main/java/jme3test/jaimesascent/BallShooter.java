@@ -0,0 +1,332 @@
+/*
+ * Copyright (c) 2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package jme3test.jaimesascent;
+
+import com.jme3.bullet.PhysicsSpace;
+import com.jme3.bullet.PhysicsTickListener;
+import com.jme3.bullet.collision.Activation;
+import com.jme3.bullet.collision.PhysicsCollisionObject;
+import com.jme3.bullet.collision.shapes.CollisionShape;
+import com.jme3.bullet.collision.shapes.SphereCollisionShape;
+import com.jme3.bullet.objects.PhysicsRigidBody;
+import com.jme3.material.Material;
+import com.jme3.math.FastMath;
+import com.jme3.math.Quaternion;
+import com.jme3.math.Vector3f;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Node;
+import com.jme3.scene.Spatial.CullHint;
+import com.jme3.scene.shape.Sphere;
+
+/**
+ *
+ * Fires wrecking balls from a fixed size pool. Every ball is created up front
+ * and stays in the physics space; a ball that falls out of the level is
+ * parked 15 below the kill height, still inside the physics world bounds,
+ * asleep and colliding with nothing, hidden, and fired again from there.
+ * A ball is only fired once the previous one has cleared the muzzle, so two
+ * balls never spawn inside each other.
+ * Firing and recycling happen in prePhysicsTick, the rendered balls are
+ * interpolated between the last two steps in update().
+ */
+public class BallShooter implements PhysicsTickListener {
+
+    private final Node node = new Node("Balls");
+    private final Geometry[] balls;
+    private final Ball[] bodies;
+    private final boolean[] active;
+
+    // last two physics steps, locations packed by 3, rotations by 4
+    private final float[] previous;
+    private final float[] current;
+    private final float[] previousRotation;
+    private final float[] currentRotation;
+
+    private final Vector3f muzzle = new Vector3f();
+    private final Vector3f impulse = new Vector3f(0, 0, -1800f);
+    private float killHeight = -10f;
+    private float fireInterval = 0f;
+    private int maxInFlight;
+    private final float spacing;
+
+    private int inFlight = 0;
+    private int lastFired = -1;
+    private float sinceFire = Float.MAX_VALUE;
+    private float stepTime = 1f / 60f;
+    private float sinceStep = 0f;
+
+    private final Vector3f location = new Vector3f();
+    private final Quaternion rotation = new Quaternion();
+    private final Quaternion rotation2 = new Quaternion();
+
+    /**
+     * @param capacity the number of balls in the pool
+     * @param radius ball radius
+     * @param mass ball mass
+     * @param material ball material
+     */
+    public BallShooter(int capacity, float radius, float mass, Material material) {
+        balls = new Geometry[capacity];
+        bodies = new Ball[capacity];
+        active = new boolean[capacity];
+        previous = new float[capacity * 3];
+        current = new float[capacity * 3];
+        previousRotation = new float[capacity * 4];
+        currentRotation = new float[capacity * 4];
+        maxInFlight = capacity;
+        spacing = radius * 2f;
+
+        final Sphere sphere = new Sphere(16, 16, radius);
+        final SphereCollisionShape shape = new SphereCollisionShape(radius);
+        for (int i = 0; i < capacity; i++) {
+            balls[i] = new Geometry("Wrecking ball." + i, sphere);
+            balls[i].setMaterial(material);
+            balls[i].setCullHint(CullHint.Always);
+            node.attachChild(balls[i]);
+
+            bodies[i] = new Ball(shape, mass);
+            bodies[i].setRestitution(1);
+            bodies[i].setUserObject(balls[i]);
+            park(i);
+        }
+    }
+
+    public Node getNode() {
+        return node;
+    }
+
+    public synchronized void setMuzzle(Vector3f location) {
+        muzzle.set(location);
+    }
+
+    public synchronized void setImpulse(Vector3f impulse) {
+        this.impulse.set(impulse);
+    }
+
+    /**
+     * @param killHeight balls below this height are recycled
+     */
+    public synchronized void setKillHeight(float killHeight) {
+        this.killHeight = killHeight;
+    }
+
+    /**
+     * @param fireInterval minimum seconds between two shots
+     */
+    public synchronized void setFireInterval(float fireInterval) {
+        this.fireInterval = fireInterval;
+    }
+
+    /**
+     * @param maxInFlight the cap on balls in the level at once, at most the
+     * pool capacity
+     */
+    public synchronized void setMaxInFlight(int maxInFlight) {
+        this.maxInFlight = Math.min(maxInFlight, balls.length);
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    public void addToSpace(PhysicsSpace space) {
+        for (PhysicsRigidBody body : bodies) {
+            space.addCollisionObject(body);
+        }
+        space.addTickListener(this);
+    }
+
+    public void removeFromSpace(PhysicsSpace space) {
+        space.removeTickListener(this);
+        for (PhysicsRigidBody body : bodies) {
+            space.removeCollisionObject(body);
+        }
+    }
+
+    /**
+     * Recycles every ball, e.g. when the level restarts.
+     */
+    public synchronized void reset() {
+        for (int i = 0; i < balls.length; i++) {
+            park(i);
+        }
+        inFlight = 0;
+        lastFired = -1;
+        sinceFire = Float.MAX_VALUE;
+    }
+
+    /**
+     * Interpolates the rendered balls. Called once per frame from the render
+     * thread.
+     *
+     * @param tpf time per frame
+     */
+    public void update(float tpf) {
+        synchronized (this) {
+            sinceStep += tpf;
+            final float alpha = FastMath.clamp(sinceStep / stepTime, 0f, 1f);
+            for (int i = 0; i < balls.length; i++) {
+                if (!active[i]) {
+                    balls[i].setCullHint(CullHint.Always);
+                    continue;
+                }
+                location.set(previous[i * 3] + (current[i * 3] - previous[i * 3]) * alpha,
+                        previous[i * 3 + 1] + (current[i * 3 + 1] - previous[i * 3 + 1]) * alpha,
+                        previous[i * 3 + 2] + (current[i * 3 + 2] - previous[i * 3 + 2]) * alpha);
+                rotation.set(previousRotation[i * 4], previousRotation[i * 4 + 1],
+                        previousRotation[i * 4 + 2], previousRotation[i * 4 + 3]);
+                rotation2.set(currentRotation[i * 4], currentRotation[i * 4 + 1],
+                        currentRotation[i * 4 + 2], currentRotation[i * 4 + 3]);
+                rotation.slerp(rotation2, alpha);
+                balls[i].setLocalTranslation(location);
+                balls[i].setLocalRotation(rotation);
+                balls[i].setCullHint(CullHint.Inherit);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void prePhysicsTick(PhysicsSpace space, float timeStep) {
+        for (int i = 0; i < balls.length; i++) {
+            if (active[i] && current[i * 3 + 1] < killHeight) {
+                park(i);
+                inFlight--;
+            }
+        }
+
+        sinceFire += timeStep;
+        if (inFlight < maxInFlight && sinceFire >= fireInterval && muzzleClear()) {
+            for (int i = 0; i < balls.length; i++) {
+                if (!active[i]) {
+                    fire(i);
+                    inFlight++;
+                    lastFired = i;
+                    sinceFire = 0f;
+                    break;
+                }
+            }
+        }
+    }
+
+    @Override
+    public synchronized void physicsTick(PhysicsSpace space, float timeStep) {
+        for (int i = 0; i < balls.length; i++) {
+            if (active[i]) {
+                snapshot(i, false);
+            }
+        }
+        stepTime = timeStep;
+        sinceStep = 0f;
+    }
+
+    /**
+     * Whether the last fired ball is at least a diameter away from the muzzle.
+     */
+    private boolean muzzleClear() {
+        if (lastFired < 0 || !active[lastFired]) {
+            return true;
+        }
+        final float dx = current[lastFired * 3] - muzzle.x;
+        final float dy = current[lastFired * 3 + 1] - muzzle.y;
+        final float dz = current[lastFired * 3 + 2] - muzzle.z;
+        return dx * dx + dy * dy + dz * dz >= spacing * spacing;
+    }
+
+    private void fire(int index) {
+        final Ball body = bodies[index];
+        body.setCollideWithGroups(PhysicsCollisionObject.COLLISION_GROUP_01);
+        body.clearForces();
+        body.setLinearVelocity(Vector3f.ZERO);
+        body.setAngularVelocity(Vector3f.ZERO);
+        body.setPhysicsLocation(muzzle);
+        body.applyCentralImpulse(impulse);
+        body.activate(true);
+        active[index] = true;
+        snapshot(index, true);
+    }
+
+    /**
+     * Takes the ball out of every collision pair, puts it to sleep so it is
+     * neither integrated nor falls, and teleports it to its own spot 15 below
+     * the kill height, under the player's reset height and above the bottom of
+     * the world bounds. Rows of 8 balls, 2.5 apart.
+     */
+    private void park(int index) {
+        final Ball body = bodies[index];
+        body.setCollideWithGroups(PhysicsCollisionObject.COLLISION_GROUP_NONE);
+        body.clearForces();
+        body.setLinearVelocity(Vector3f.ZERO);
+        body.setAngularVelocity(Vector3f.ZERO);
+        location.set(muzzle.x + (index % 8 - 3.5f) * 2.5f, killHeight - 15f, muzzle.z + (index / 8) * 2.5f);
+        body.setPhysicsLocation(location);
+        body.sleep();
+        active[index] = false;
+    }
+
+    /**
+     * Stores the body transform as the current step, and as the previous one
+     * too when it was just teleported.
+     */
+    private void snapshot(int index, boolean teleported) {
+        final PhysicsRigidBody body = bodies[index];
+        System.arraycopy(current, index * 3, previous, index * 3, 3);
+        System.arraycopy(currentRotation, index * 4, previousRotation, index * 4, 4);
+        body.getPhysicsLocation(location);
+        body.getPhysicsRotation(rotation);
+        current[index * 3] = location.x;
+        current[index * 3 + 1] = location.y;
+        current[index * 3 + 2] = location.z;
+        currentRotation[index * 4] = rotation.getX();
+        currentRotation[index * 4 + 1] = rotation.getY();
+        currentRotation[index * 4 + 2] = rotation.getZ();
+        currentRotation[index * 4 + 3] = rotation.getW();
+        if (teleported) {
+            System.arraycopy(current, index * 3, previous, index * 3, 3);
+            System.arraycopy(currentRotation, index * 4, previousRotation, index * 4, 4);
+        }
+    }
+
+    /**
+     * A pooled ball body that can be put to sleep on demand, instead of waiting
+     * for Bullet to notice it stopped.
+     */
+    private static final class Ball extends PhysicsRigidBody {
+
+        Ball(CollisionShape shape, float mass) {
+            super(shape, mass);
+        }
+
+        void sleep() {
+            setActivationState(nativeId(), Activation.sleeping);
+        }
+    }
+}
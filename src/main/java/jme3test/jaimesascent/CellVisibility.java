@@ -0,0 +1,370 @@
+/*
+ * Copyright (c) 2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package jme3test.jaimesascent;
+
+import com.jme3.bounding.BoundingBox;
+import com.jme3.bullet.PhysicsSpace;
+import com.jme3.bullet.collision.PhysicsRayTestResult;
+import com.jme3.bullet.objects.PhysicsRigidBody;
+import com.jme3.math.Vector3f;
+import com.jme3.scene.Spatial;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ *
+ * Potentially visible sets for the level. The bounds of the static geometry
+ * are split into a grid of cells, and a cell sees another when any of a
+ * number of random rays between them misses the static collision mesh.
+ * Sampling alone would hide cells seen through gaps the rays missed, so the
+ * sets err towards visible: a blocked ray counts as clear when a parallel ray
+ * a margin away clears, and every cell next to a visible cell is visible too.
+ * Spatials added here are culled when none of the cells they overlap is
+ * visible from the camera cell. The sets are built on first load and cached,
+ * keyed by a hash of the static geometry.
+ */
+public class CellVisibility {
+
+    private static final Logger LOG = Logger.getLogger(CellVisibility.class.getName());
+
+    /**
+     * Bump when the way the sets are built changes, to invalidate old files.
+     */
+    private static final int VERSION = 2;
+
+    /**
+     * Rays tried between two cells before they count as hidden.
+     */
+    private static final int SAMPLES = 32;
+
+    /**
+     * Offset of the parallel rays tried around a blocked one, as a fraction of
+     * the cell edge.
+     */
+    private static final float MARGIN = 0.25f;
+
+    private final float cellSize;
+    private final Vector3f origin;
+    private final int sizeX;
+    private final int sizeY;
+    private final int sizeZ;
+    private final BitSet[] visible;
+
+    private final List<Spatial> spatials = new ArrayList<>();
+    private final List<BitSet> covered = new ArrayList<>();
+    private int cameraCell = -2;
+    private int hidden = 0;
+
+    /**
+     * Builds or loads the sets. Shadows fall into view from cells towards the
+     * light, so those cells are kept visible as well.
+     *
+     * @param statics the static geometry, the occluders
+     * @param assetPath the asset the statics were loaded from, used to name
+     * the cache file
+     * @param cellSize the edge of a cell
+     * @param lightDirection direction of the shadow casting light
+     */
+    public CellVisibility(Spatial statics, String assetPath, float cellSize, Vector3f lightDirection) {
+        this.cellSize = cellSize;
+        statics.updateGeometricState();
+        final BoundingBox bounds = (BoundingBox) statics.getWorldBound();
+        origin = bounds.getMin(null);
+        final Vector3f size = bounds.getExtent(null).multLocal(2f / cellSize);
+        sizeX = Math.max(1, (int) Math.ceil(size.x));
+        sizeY = Math.max(1, (int) Math.ceil(size.y));
+        sizeZ = Math.max(1, (int) Math.ceil(size.z));
+        visible = new BitSet[sizeX * sizeY * sizeZ];
+
+        final String prefix = new File(assetPath).getName() + "." + statics.getName();
+        final File file = CollisionShapeCache.cacheFile(prefix, CollisionShapeCache.hash(statics) + "-" + cellSize + ".pvs");
+        if (!read(file)) {
+            build(statics, assetPath);
+            write(file, prefix);
+        }
+        addShadowCasters(lightDirection);
+    }
+
+    /**
+     * Culls the spatial by the cells its world bound overlaps. The spatial must
+     * not move.
+     */
+    public void add(Spatial spatial) {
+        final BitSet cells = new BitSet(visible.length);
+        if (spatial.getWorldBound() instanceof BoundingBox box) {
+            final Vector3f min = box.getMin(null).subtractLocal(origin).divideLocal(cellSize);
+            final Vector3f max = box.getMax(null).subtractLocal(origin).divideLocal(cellSize);
+            for (int z = clamp(min.z, sizeZ); z <= clamp(max.z, sizeZ); z++) {
+                for (int y = clamp(min.y, sizeY); y <= clamp(max.y, sizeY); y++) {
+                    for (int x = clamp(min.x, sizeX); x <= clamp(max.x, sizeX); x++) {
+                        cells.set(index(x, y, z));
+                    }
+                }
+            }
+        } else {
+            cells.set(0, visible.length);
+        }
+        spatials.add(spatial);
+        covered.add(cells);
+        cameraCell = -2;
+    }
+
+    /**
+     * Shows the spatials visible from the camera. Only does work when the
+     * camera changes cell.
+     */
+    public void update(Vector3f camera) {
+        final int cell = cell(camera);
+        if (cell == cameraCell) {
+            return;
+        }
+        cameraCell = cell;
+        hidden = 0;
+        for (int i = 0; i < spatials.size(); i++) {
+            // outside the grid everything may be in view
+            final boolean shown = cell < 0 || covered.get(i).intersects(visible[cell]);
+            spatials.get(i).setCullHint(shown ? Spatial.CullHint.Inherit : Spatial.CullHint.Always);
+            if (!shown) {
+                hidden++;
+            }
+        }
+    }
+
+    public int getCellCount() {
+        return visible.length;
+    }
+
+    /**
+     * @return spatials culled for the current camera cell
+     */
+    public int getHiddenCount() {
+        return hidden;
+    }
+
+    private void build(Spatial statics, String assetPath) {
+        final long start = System.nanoTime();
+        final PhysicsSpace space = new PhysicsSpace(origin, origin.add(sizeX * cellSize, sizeY * cellSize, sizeZ * cellSize),
+                PhysicsSpace.BroadphaseType.DBVT);
+        final PhysicsRigidBody body = new PhysicsRigidBody(CollisionShapeCache.createMeshShape(statics, assetPath), 0f);
+        body.setPhysicsLocation(statics.getWorldTranslation());
+        body.setPhysicsRotation(statics.getWorldRotation());
+        space.addCollisionObject(body);
+
+        for (int i = 0; i < visible.length; i++) {
+            visible[i] = new BitSet(visible.length);
+        }
+        final Random random = new Random(42);
+        final List<PhysicsRayTestResult> results = new ArrayList<>();
+        final Vector3f from = new Vector3f();
+        final Vector3f to = new Vector3f();
+        for (int a = 0; a < visible.length; a++) {
+            visible[a].set(a);
+            for (int b = a + 1; b < visible.length; b++) {
+                boolean clear = isNeighbour(a, b);
+                for (int sample = 0; sample < SAMPLES && !clear; sample++) {
+                    randomPoint(a, random, from);
+                    randomPoint(b, random, to);
+                    clear = isClear(space, from, to, results);
+                }
+                if (clear) {
+                    visible[a].set(b);
+                    visible[b].set(a);
+                }
+            }
+        }
+        // a cell inside a wall sees nothing, the camera can still end up there
+        for (int a = 0; a < visible.length; a++) {
+            boolean solid = true;
+            for (int b = visible[a].nextSetBit(0); b >= 0 && solid; b = visible[a].nextSetBit(b + 1)) {
+                solid = isNeighbour(a, b) || a == b;
+            }
+            if (solid) {
+                visible[a].set(0, visible.length);
+            }
+        }
+        // a gap the rays missed is still next to a cell they reached
+        final BitSet[] dilated = new BitSet[visible.length];
+        for (int a = 0; a < visible.length; a++) {
+            dilated[a] = (BitSet) visible[a].clone();
+            for (int b = visible[a].nextSetBit(0); b >= 0; b = visible[a].nextSetBit(b + 1)) {
+                addNeighbours(b, dilated[a]);
+            }
+        }
+        System.arraycopy(dilated, 0, visible, 0, visible.length);
+        space.destroy();
+        LOG.log(Level.INFO, "Built visibility of {0} cells in {1} ms.",
+                new Object[]{visible.length, (System.nanoTime() - start) / 1_000_000});
+    }
+
+    /**
+     * @return whether the ray, or one of four parallel rays around it, misses
+     * the static mesh
+     */
+    private boolean isClear(PhysicsSpace space, Vector3f from, Vector3f to, List<PhysicsRayTestResult> results) {
+        results.clear();
+        if (space.rayTest(from, to, results).isEmpty()) {
+            return true;
+        }
+        final Vector3f direction = to.subtract(from).normalizeLocal();
+        final Vector3f side = direction.cross(Math.abs(direction.y) < 0.9f ? Vector3f.UNIT_Y : Vector3f.UNIT_X)
+                .normalizeLocal().multLocal(MARGIN * cellSize);
+        final Vector3f up = direction.cross(side);
+        for (Vector3f offset : new Vector3f[]{side, side.negate(), up, up.negate()}) {
+            results.clear();
+            if (space.rayTest(from.add(offset), to.add(offset), results).isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void addNeighbours(int cell, BitSet store) {
+        final int x = cell % sizeX;
+        final int y = cell / sizeX % sizeY;
+        final int z = cell / (sizeX * sizeY);
+        for (int nz = Math.max(0, z - 1); nz <= Math.min(sizeZ - 1, z + 1); nz++) {
+            for (int ny = Math.max(0, y - 1); ny <= Math.min(sizeY - 1, y + 1); ny++) {
+                for (int nx = Math.max(0, x - 1); nx <= Math.min(sizeX - 1, x + 1); nx++) {
+                    store.set(index(nx, ny, nz));
+                }
+            }
+        }
+    }
+
+    private void addShadowCasters(Vector3f lightDirection) {
+        final BitSet[] casters = new BitSet[visible.length];
+        final Vector3f point = new Vector3f();
+        final Vector3f step = lightDirection.normalize().multLocal(-cellSize);
+        for (int a = 0; a < visible.length; a++) {
+            casters[a] = (BitSet) visible[a].clone();
+            for (int b = visible[a].nextSetBit(0); b >= 0; b = visible[a].nextSetBit(b + 1)) {
+                center(b, point);
+                for (int c = b; c >= 0; c = cell(point.addLocal(step))) {
+                    casters[a].set(c);
+                }
+            }
+        }
+        System.arraycopy(casters, 0, visible, 0, visible.length);
+    }
+
+    private boolean read(File file) {
+        if (!file.isFile()) {
+            return false;
+        }
+        try {
+            final ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+            final long checksum = data.getLong();
+            final byte[] sets = new byte[data.remaining()];
+            data.get(sets);
+            if (checksum != CollisionShapeCache.checksum(sets)) {
+                LOG.log(Level.WARNING, "Visibility cache {0} is corrupt, rebuilding.", file);
+                return false;
+            }
+            final LongBuffer words = ByteBuffer.wrap(sets).asLongBuffer();
+            if (words.get() != VERSION || words.get() != visible.length) {
+                return false;
+            }
+            final long[] set = new long[(visible.length + 63) / 64];
+            for (int i = 0; i < visible.length; i++) {
+                words.get(set);
+                visible[i] = BitSet.valueOf(set);
+            }
+            return true;
+        } catch (IOException | RuntimeException exception) {
+            LOG.log(Level.WARNING, "Unable to read visibility cache {0}, rebuilding.", file);
+            return false;
+        }
+    }
+
+    private void write(File file, String prefix) {
+        final int words = (visible.length + 63) / 64;
+        final ByteBuffer sets = ByteBuffer.allocate((2 + words * visible.length) * Long.BYTES);
+        sets.putLong(VERSION).putLong(visible.length);
+        for (BitSet set : visible) {
+            final long[] longs = set.toLongArray();
+            for (int i = 0; i < words; i++) {
+                sets.putLong(i < longs.length ? longs[i] : 0L);
+            }
+        }
+        try {
+            CollisionShapeCache.writeCache(file, prefix, sets.array());
+        } catch (IOException exception) {
+            LOG.log(Level.WARNING, "Unable to write visibility cache {0}.", file);
+        }
+    }
+
+    /**
+     * @return the cell holding the point, or -1 outside the grid
+     */
+    private int cell(Vector3f point) {
+        final int x = (int) Math.floor((point.x - origin.x) / cellSize);
+        final int y = (int) Math.floor((point.y - origin.y) / cellSize);
+        final int z = (int) Math.floor((point.z - origin.z) / cellSize);
+        if (x < 0 || y < 0 || z < 0 || x >= sizeX || y >= sizeY || z >= sizeZ) {
+            return -1;
+        }
+        return index(x, y, z);
+    }
+
+    private int index(int x, int y, int z) {
+        return x + sizeX * (y + sizeY * z);
+    }
+
+    private boolean isNeighbour(int a, int b) {
+        return Math.abs(a % sizeX - b % sizeX) <= 1
+                && Math.abs(a / sizeX % sizeY - b / sizeX % sizeY) <= 1
+                && Math.abs(a / (sizeX * sizeY) - b / (sizeX * sizeY)) <= 1;
+    }
+
+    private void center(int cell, Vector3f store) {
+        store.set(cell % sizeX + 0.5f, cell / sizeX % sizeY + 0.5f, cell / (sizeX * sizeY) + 0.5f)
+                .multLocal(cellSize).addLocal(origin);
+    }
+
+    private void randomPoint(int cell, Random random, Vector3f store) {
+        store.set(cell % sizeX + random.nextFloat(), cell / sizeX % sizeY + random.nextFloat(),
+                cell / (sizeX * sizeY) + random.nextFloat()).multLocal(cellSize).addLocal(origin);
+    }
+
+    private static int clamp(float coordinate, int size) {
+        return Math.max(0, Math.min(size - 1, (int) Math.floor(coordinate)));
+    }
+}
@@ -0,0 +1,231 @@
+/*
+ * Copyright (c) 2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package jme3test.jaimesascent;
+
+import com.jme3.bullet.collision.shapes.MeshCollisionShape;
+import com.jme3.bullet.collision.shapes.infos.IndexedMesh;
+import com.jme3.math.Transform;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.SceneGraphIterator;
+import com.jme3.scene.Spatial;
+import com.jme3.scene.VertexBuffer;
+import com.jme3.scene.mesh.IndexBuffer;
+import com.jme3.system.JmeSystem;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32C;
+
+/**
+ *
+ * Builds the static mesh collision shape of a level and caches its BVH on
+ * disk. The triangles are taken from the already loaded scene; only the BVH,
+ * the expensive part, is stored. The cache file is keyed by a hash of the
+ * meshes and transforms the shape is built from, so an edited level rebuilds
+ * its BVH once and later launches load it instead.
+ */
+public final class CollisionShapeCache {
+
+    private static final Logger LOG = Logger.getLogger(CollisionShapeCache.class.getName());
+
+    /**
+     * Bump when the way shapes are built changes, to invalidate old files.
+     */
+    private static final int VERSION = 1;
+
+    private CollisionShapeCache() {
+    }
+
+    /**
+     * Creates one mesh shape for all geometries under the spatial, in the
+     * local space of the spatial, loading its BVH from the cache when possible.
+     *
+     * @param spatial the static geometry
+     * @param assetPath the asset the spatial was loaded from, used to name the
+     * cache file
+     * @return the collision shape
+     */
+    public static MeshCollisionShape createMeshShape(Spatial spatial, String assetPath) {
+        final long start = StartupTimeline.start();
+        final MeshCollisionShape shape = loadOrBuild(spatial, assetPath);
+        StartupTimeline.record(StartupTimeline.Category.COLLISION, "Mesh shape " + spatial.getName(), start);
+        return shape;
+    }
+
+    private static MeshCollisionShape loadOrBuild(Spatial spatial, String assetPath) {
+        final List<Geometry> geometries = geometries(spatial);
+        final Transform[] transforms = transforms(spatial, geometries);
+        final IndexedMesh[] submeshes = new IndexedMesh[geometries.size()];
+        for (int i = 0; i < submeshes.length; i++) {
+            submeshes[i] = new IndexedMesh(geometries.get(i).getMesh(), transforms[i]);
+        }
+
+        final String prefix = new File(assetPath).getName() + "." + spatial.getName();
+        final File file = cacheFile(prefix, hash(geometries, transforms) + ".bvh");
+        if (file.isFile()) {
+            try {
+                final ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+                final long checksum = data.getLong();
+                final byte[] bvh = new byte[data.remaining()];
+                data.get(bvh);
+                if (checksum == checksum(bvh)) {
+                    return new MeshCollisionShape(bvh, submeshes);
+                }
+                LOG.log(Level.WARNING, "Collision shape cache {0} is corrupt, rebuilding.", file);
+            } catch (IOException | RuntimeException exception) {
+                LOG.log(Level.WARNING, "Unable to read collision shape cache {0}, rebuilding.", file);
+            }
+        }
+
+        final MeshCollisionShape shape = new MeshCollisionShape(true, submeshes);
+        try {
+            writeCache(file, prefix, shape.serializeBvh());
+        } catch (IOException exception) {
+            LOG.log(Level.WARNING, "Unable to write collision shape cache {0}.", file);
+        }
+        return shape;
+    }
+
+    /**
+     * @return a hash of the triangles createMeshShape builds from, to key
+     * other caches derived from the same geometry
+     */
+    static String hash(Spatial spatial) {
+        final List<Geometry> geometries = geometries(spatial);
+        return hash(geometries, transforms(spatial, geometries));
+    }
+
+    private static List<Geometry> geometries(Spatial spatial) {
+        final List<Geometry> geometries = new ArrayList<>();
+        for (Spatial child : new SceneGraphIterator(spatial)) {
+            if (child instanceof Geometry geometry && geometry.getMesh().getMode() == Mesh.Mode.Triangles) {
+                geometries.add(geometry);
+            }
+        }
+        return geometries;
+    }
+
+    private static Transform[] transforms(Spatial spatial, List<Geometry> geometries) {
+        final Transform inverse = spatial.getWorldTransform().invert();
+        final Transform[] transforms = new Transform[geometries.size()];
+        for (int i = 0; i < transforms.length; i++) {
+            // the shape is built relative to the spatial
+            transforms[i] = geometries.get(i).getWorldTransform().clone().combineWithParent(inverse);
+        }
+        return transforms;
+    }
+
+    /**
+     * The caches live in the application storage folder, never among the
+     * assets, where the build would package them.
+     *
+     * @param prefix names what is cached, e.g. the asset and spatial
+     * @param key the hash of the cached data and the file extension
+     */
+    static File cacheFile(String prefix, String key) {
+        return new File(JmeSystem.getStorageFolder(), "cache" + File.separator + prefix + "-" + key);
+    }
+
+    /**
+     * Writes the data behind its checksum, then deletes the files of the same
+     * prefix and extension, left behind by older versions of the data.
+     */
+    static void writeCache(File file, String prefix, byte[] data) throws IOException {
+        final File folder = file.getParentFile();
+        folder.mkdirs();
+        Files.write(file.toPath(), ByteBuffer.allocate(Long.BYTES + data.length)
+                .putLong(checksum(data)).put(data).array());
+        final String extension = file.getName().substring(file.getName().lastIndexOf('.'));
+        final File[] stale = folder.listFiles((dir, name) -> name.startsWith(prefix + "-")
+                && name.endsWith(extension) && !name.equals(file.getName()));
+        if (stale != null) {
+            for (File old : stale) {
+                if (!old.delete()) {
+                    LOG.log(Level.FINE, "Unable to delete stale cache {0}.", old);
+                }
+            }
+        }
+    }
+
+    private static String hash(List<Geometry> geometries, Transform[] transforms) {
+        final CRC32C crc = new CRC32C();
+        int triangles = 0;
+        ByteBuffer bytes = ByteBuffer.allocate(Integer.BYTES + 10 * Float.BYTES);
+        bytes.putInt(VERSION);
+        for (int i = 0; i < transforms.length; i++) {
+            final Transform transform = transforms[i];
+            bytes.putFloat(transform.getTranslation().x).putFloat(transform.getTranslation().y).putFloat(transform.getTranslation().z);
+            bytes.putFloat(transform.getRotation().getX()).putFloat(transform.getRotation().getY());
+            bytes.putFloat(transform.getRotation().getZ()).putFloat(transform.getRotation().getW());
+            bytes.putFloat(transform.getScale().x).putFloat(transform.getScale().y).putFloat(transform.getScale().z);
+            crc.update(bytes.flip());
+            bytes.clear();
+
+            final Mesh mesh = geometries.get(i).getMesh();
+            triangles += mesh.getTriangleCount();
+            update(crc, mesh);
+        }
+        return Long.toHexString(crc.getValue()) + "-" + triangles;
+    }
+
+    /**
+     * Adds the positions and indices of the mesh to the checksum.
+     */
+    static void update(CRC32C crc, Mesh mesh) {
+        final FloatBuffer positions = mesh.getFloatBuffer(VertexBuffer.Type.Position);
+        final IndexBuffer indices = mesh.getIndexBuffer();
+        final int size = positions.limit() * Float.BYTES + (indices == null ? 0 : indices.size() * Integer.BYTES);
+        final ByteBuffer data = ByteBuffer.allocate(size);
+        // up to the limit, the buffer may be larger than the mesh
+        data.asFloatBuffer().put(positions.duplicate().rewind());
+        data.position(positions.limit() * Float.BYTES);
+        if (indices != null) {
+            for (int j = 0; j < indices.size(); j++) {
+                data.putInt(indices.get(j));
+            }
+        }
+        crc.update(data.flip());
+    }
+
+    static long checksum(byte[] data) {
+        final CRC32C crc = new CRC32C();
+        crc.update(data);
+        return crc.getValue();
+    }
+}
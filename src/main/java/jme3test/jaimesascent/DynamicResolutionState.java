@@ -0,0 +1,323 @@
+/*
+ * Copyright (c) 2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package jme3test.jaimesascent;
+
+import com.jme3.app.Application;
+import com.jme3.app.state.BaseAppState;
+import com.jme3.post.SceneProcessor;
+import com.jme3.profile.AppProfiler;
+import com.jme3.renderer.Camera;
+import com.jme3.renderer.RenderManager;
+import com.jme3.renderer.Renderer;
+import com.jme3.renderer.ViewPort;
+import com.jme3.renderer.queue.RenderQueue;
+import com.jme3.scene.Node;
+import com.jme3.texture.FrameBuffer;
+import com.jme3.texture.FrameBuffer.FrameBufferTarget;
+import com.jme3.texture.Image.Format;
+import com.jme3.texture.Texture;
+import com.jme3.texture.Texture2D;
+import com.jme3.ui.Picture;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ *
+ * Holds the target frame rate by drawing the 3D scene into a corner of the
+ * window at a fraction of its resolution and stretching that over the whole
+ * window. The GUI viewport is drawn after, so the screens stay at native
+ * resolution.
+ * <p>
+ * The scale follows the GPU frame time, taken with timer queries, against the
+ * frame budget. It drops as soon as the GPU is over the budget and is the
+ * bottleneck, and climbs back one step at a time once there is headroom. The
+ * band between the two thresholds and a cooldown after each change keep it
+ * from oscillating. A frame held up by the CPU leaves the scale alone, since
+ * fewer pixels would not make it faster.
+ */
+public class DynamicResolutionState extends BaseAppState {
+
+    /**
+     * The scale moves in steps of 1 / STEPS, down to MIN_STEP / STEPS.
+     */
+    private static final int STEPS = 20;
+    private static final int MIN_STEP = 10;
+
+    /**
+     * Fractions of the budget the GPU time scales down above and up below.
+     */
+    private static final float DOWN = 0.95f;
+    private static final float UP = 0.7f;
+
+    /**
+     * Fraction of the budget a scale down aims the GPU time at.
+     */
+    private static final float AIM = 0.85f;
+
+    /**
+     * Frames between changes, long enough for the queries and the averages to
+     * see the new scale.
+     */
+    private static final int COOLDOWN = 30;
+    private static final float SMOOTHING = 0.1f;
+    private static final int QUERIES = 4;
+
+    private static final Logger LOG = Logger.getLogger(DynamicResolutionState.class.getName());
+
+    private final Node upscaleRoot = new Node("Dynamic resolution");
+    private final Picture upscaled = new Picture("Upscaled scene");
+    private final boolean[] pending = new boolean[QUERIES];
+
+    private Renderer renderer;
+    private ViewPort sceneView;
+    private ViewPort upscaleView;
+    private FrameBuffer target;
+    private Texture2D targetTexture;
+    private int[] queries;
+    private float budget;
+    private int step = STEPS;
+    private int width;
+    private int height;
+    private int frame;
+    private boolean measuring;
+    private long frameStart;
+    private float gpuTime;
+    private float cpuTime;
+    private int cooldown;
+
+    @Override
+    protected void initialize(Application app) {
+        renderer = app.getRenderer();
+        sceneView = app.getViewPort();
+        final Camera camera = sceneView.getCamera();
+        width = camera.getWidth();
+        height = camera.getHeight();
+
+        upscaleView = app.getRenderManager().createMainView("Dynamic resolution", new Camera(width, height));
+        upscaleView.setClearFlags(false, false, false);
+        upscaleView.addProcessor(new SceneCopy());
+        upscaleView.attachScene(upscaleRoot);
+        upscaleView.setEnabled(false);
+        upscaleRoot.attachChild(upscaled);
+
+        final int frameRate = app.getContext().getSettings().getInteger(Main.TARGET_FRAME_RATE);
+        budget = frameRate > 0 ? 1e9f / frameRate : 0;
+        queries = renderer.generateProfilingTasks(QUERIES);
+        if (budget == 0) {
+            setEnabled(false);
+        } else if (queries.length < QUERIES) {
+            LOG.info("No GPU timer queries, the scene stays at native resolution.");
+            setEnabled(false);
+        }
+    }
+
+    /**
+     * @return the fraction of the window resolution the scene is drawn at
+     */
+    public float getScale() {
+        return step / (float) STEPS;
+    }
+
+    @Override
+    public void update(float tpf) {
+        frameStart = System.nanoTime();
+        final Camera camera = sceneView.getCamera();
+        if (camera.getWidth() != width || camera.getHeight() != height) {
+            width = camera.getWidth();
+            height = camera.getHeight();
+            resize();
+        }
+        if (cooldown > 0) {
+            cooldown--;
+        } else if (gpuTime > 0) {
+            adjust();
+        }
+    }
+
+    private void adjust() {
+        int next = step;
+        if (gpuTime > DOWN * budget && gpuTime >= cpuTime) {
+            // the pixels drawn, and so roughly the fill cost, go with the square of the scale
+            next = (int) (step * Math.sqrt(AIM * budget / gpuTime));
+        } else if (gpuTime < UP * budget) {
+            next = step + 1;
+        }
+        next = Math.max(MIN_STEP, Math.min(STEPS, next));
+        if (next != step) {
+            step = next;
+            cooldown = COOLDOWN;
+            resize();
+            LOG.log(Level.INFO, "Scene scale {0} at {1} ms GPU, {2} ms CPU for a {3} ms budget.", new Object[]{
+                getScale(), gpuTime / 1e6f, cpuTime / 1e6f, budget / 1e6f});
+        }
+    }
+
+    /**
+     * Fits the scene viewport, the copy target and the stretched picture to the
+     * scale and the window size.
+     */
+    private void resize() {
+        final float scale = getScale();
+        final Camera camera = sceneView.getCamera();
+        if (camera.getViewPortRight() != scale || camera.getViewPortTop() != scale) {
+            // the post processors only read the viewport when initialized
+            final List<SceneProcessor> processors = new ArrayList<>(sceneView.getProcessors());
+            processors.forEach(sceneView::removeProcessor);
+            camera.setViewPort(0, scale, 0, scale);
+            processors.forEach(sceneView::addProcessor);
+        }
+
+        if (target != null) {
+            target.dispose();
+            targetTexture.getImage().dispose();
+            target = null;
+        }
+        upscaleView.setEnabled(step < STEPS);
+        if (step == STEPS) {
+            return;
+        }
+        // the same size as the corner drawn, so the copy is a plain blit
+        targetTexture = new Texture2D((int) (scale * width), (int) (scale * height), Format.RGBA8);
+        targetTexture.setMagFilter(Texture.MagFilter.Bilinear);
+        targetTexture.setMinFilter(Texture.MinFilter.BilinearNoMipMaps);
+        target = new FrameBuffer(targetTexture.getImage().getWidth(), targetTexture.getImage().getHeight(), 1);
+        target.addColorTarget(FrameBufferTarget.newTarget(targetTexture));
+
+        upscaled.setTexture(getApplication().getAssetManager(), targetTexture, false);
+        upscaled.getMaterial().getAdditionalRenderState().setDepthTest(false);
+        upscaled.getMaterial().getAdditionalRenderState().setDepthWrite(false);
+        upscaled.setWidth(width);
+        upscaled.setHeight(height);
+        upscaleRoot.updateGeometricState();
+    }
+
+    @Override
+    public void render(RenderManager rm) {
+        final int slot = frame % QUERIES;
+        if (pending[slot]) {
+            if (!renderer.isTaskResultAvailable(queries[slot])) {
+                // the GPU is more than QUERIES frames behind, this frame goes unmeasured
+                return;
+            }
+            gpuTime = smooth(gpuTime, renderer.getProfilingTime(queries[slot]));
+            pending[slot] = false;
+        }
+        renderer.startProfiling(queries[slot]);
+        measuring = true;
+    }
+
+    @Override
+    public void postRender() {
+        if (measuring) {
+            renderer.stopProfiling();
+            pending[frame % QUERIES] = true;
+            measuring = false;
+        }
+        cpuTime = smooth(cpuTime, System.nanoTime() - frameStart);
+        frame++;
+    }
+
+    private static float smooth(float average, long sample) {
+        return average == 0 ? sample : average + SMOOTHING * (sample - average);
+    }
+
+    @Override
+    protected void cleanup(Application app) {
+        if (step != STEPS) {
+            step = STEPS;
+            resize();
+        }
+        app.getRenderManager().removeMainView(upscaleView);
+    }
+
+    @Override
+    protected void onEnable() {
+        cooldown = COOLDOWN;
+    }
+
+    @Override
+    protected void onDisable() {
+        if (step != STEPS) {
+            step = STEPS;
+            resize();
+        }
+    }
+
+    /**
+     * Copies the corner the scene was drawn in before the picture stretches it
+     * over the window.
+     */
+    private class SceneCopy implements SceneProcessor {
+
+        private boolean initialized;
+
+        @Override
+        public void initialize(RenderManager rm, ViewPort vp) {
+            initialized = true;
+        }
+
+        @Override
+        public void reshape(ViewPort vp, int w, int h) {
+        }
+
+        @Override
+        public boolean isInitialized() {
+            return initialized;
+        }
+
+        @Override
+        public void preFrame(float tpf) {
+            // a default framebuffer source is read from the current viewport
+            renderer.setViewPort(0, 0, target.getWidth(), target.getHeight());
+            renderer.copyFrameBuffer(null, target, true, false);
+        }
+
+        @Override
+        public void postQueue(RenderQueue rq) {
+        }
+
+        @Override
+        public void postFrame(FrameBuffer out) {
+        }
+
+        @Override
+        public void cleanup() {
+            initialized = false;
+        }
+
+        @Override
+        public void setProfiler(AppProfiler profiler) {
+        }
+    }
+}
@@ -37,6 +37,7 @@ import com.jme3.app.SimpleApplication;
 import com.jme3.app.state.BaseAppState;
 import com.jme3.asset.AssetManager;
 import com.jme3.bullet.BulletAppState;
+import com.jme3.bullet.BulletAppState.ThreadingType;
 import com.jme3.bullet.control.BetterCharacterControl;
 import com.jme3.input.ChaseCamera;
 import com.jme3.input.InputManager;
@@ -47,6 +48,7 @@ import com.jme3.math.FastMath;
 import com.jme3.math.Vector3f;
 import com.jme3.renderer.Camera;
 import com.jme3.scene.Node;
+import com.jme3.system.AppSettings;
 import jme3test.jaimesascent.screen.GameGUIScreen;
 import jme3test.jaimesascent.ui.Window;
 import jme3test.jaimesascent.ui.WindowListener;
@@ -68,6 +70,7 @@ public class GameState extends BaseAppState implements WindowListener<Integer> {
     private GameGUIScreen uiScreen;
     
     private BetterCharacterControl physicsCharacter;
+    private PhysicsInterpolationControl characterInterpolation;
     private Node playerNode;
     private MovementControl moveControl;
 
@@ -78,22 +81,55 @@ public class GameState extends BaseAppState implements WindowListener<Integer> {
         this.physicsState = physicsState;
     }
 
+    /**
+     * Loads the player character. Touches nothing of the application, so Main
+     * runs it on a loader thread before attaching the state; otherwise the
+     * state loads it when initialized.
+     *
+     * @param listener told each step, with the progress from 0 to 1
+     */
+    public void load(AssetManager assetManager, AppSettings settings, LoadingListener listener) {
+        final long start = StartupTimeline.start();
+        listener.loading("Loading Jaime", 0f);
+        playerNode = (Node) assetManager.loadModel("Models/Jaime/Jaime.j3o");
+        playerNode.setLocalScale(1.50f);
+        playerNode.setLocalTranslation(new Vector3f(0, 2, 0));
+
+        if (settings.getBoolean(Main.MESH_LODS)) {
+            listener.loading("Generating Jaime's LODs", 0.5f);
+            MeshLods.generate(playerNode, "Models/Jaime/Jaime.j3o");
+        }
+
+        // Since Jaime was created using the old animation system
+        // it needs to be converted to the new one.
+        AnimMigrationUtils.migrate(playerNode);
+        StartupTimeline.record(StartupTimeline.Category.INIT, "GameState.load", start);
+    }
+
     @Override
     protected void initialize(Application app) {
+        final long start = StartupTimeline.start();
 
         this.inputManager = app.getInputManager();
         this.cam = app.getCamera();
         this.rootNode = ((SimpleApplication) app).getRootNode();
 
+        // not attached when running headless
         uiScreen = getState(GameGUIScreen.class);
-        uiScreen.getWindow().addWindosListener(this);
+        if (uiScreen != null) {
+            uiScreen.getWindow().addWindosListener(this);
+        }
         
-        setupCharacter(app.getAssetManager());
+        if (playerNode == null) {
+            load(app.getAssetManager(), app.getContext().getSettings(), (step, progress) -> { });
+        }
+        setupCharacter();
 
         setupKeys();
 
         setupChaseCam();
 
+        StartupTimeline.record(StartupTimeline.Category.STATE, "GameState.initialize", start);
     }
 
     @Override
@@ -116,25 +152,43 @@ public class GameState extends BaseAppState implements WindowListener<Integer> {
         }
     }
 
+    /**
+     * @return the world location of the player, read only
+     */
+    public Vector3f getPlayerLocation() {
+        return playerNode.getWorldTranslation();
+    }
+
     @Override
     protected void cleanup(Application aplctn) {
     }
 
     @Override
     protected void onEnable() {
-        uiScreen.setEnabled(true);
+        if (uiScreen != null) {
+            uiScreen.setEnabled(true);
+        }
     }
 
     @Override
     protected void onDisable() {
-        uiScreen.setEnabled(false);
+        if (uiScreen != null) {
+            uiScreen.setEnabled(false);
+        }
     }
 
     private void reset() {
         physicsCharacter.warp(startTranslation);
+        if (characterInterpolation != null) {
+            characterInterpolation.reset();
+        }
         chaseCam.setDefaultHorizontalRotation(startRotation);
     }
 
+    private boolean isMenuVisible() {
+        return uiScreen != null && uiScreen.getWindow().isVisible();
+    }
+
     private void setupKeys() {
         inputManager.addMapping("Strafe Left",
                 new KeyTrigger(KeyInput.KEY_A),
@@ -158,14 +212,14 @@ public class GameState extends BaseAppState implements WindowListener<Integer> {
         inputManager.addListener(moveControl, "Strafe Left", "Strafe Right");
         inputManager.addListener(moveControl, "Walk Forward", "Walk Backward");
         inputManager.addListener((ActionListener) (String string, boolean bln, float f) -> {
-            if ("Mouse".equals(string) && !uiScreen.getWindow().isVisible()) {
+            if ("Mouse".equals(string) && !isMenuVisible()) {
                 inputManager.setCursorVisible(bln);
                 pause(!bln);
             }
         }, "Mouse");
         inputManager.addListener(moveControl, "Jump");
         inputManager.addListener((ActionListener) (String string, boolean bln, float f) -> {
-            if (!bln && !uiScreen.getWindow().isVisible()) {
+            if (!bln && !isMenuVisible()) {
                 reset();
             }
         }, "Reset");
@@ -186,26 +240,29 @@ public class GameState extends BaseAppState implements WindowListener<Integer> {
         chaseCam.setDefaultHorizontalRotation(startRotation);
     }
 
-    private void setupCharacter(AssetManager assetManager) {
+    private void setupCharacter() {
 
         physicsCharacter = new BetterCharacterControl(0.4f, 2.5f, 1f);
 
         physicsState.getPhysicsSpace().add(physicsCharacter);
 
-        playerNode = (Node) assetManager.loadModel("Models/Jaime/Jaime.j3o");
-        playerNode.setLocalScale(1.50f);
-        playerNode.setLocalTranslation(new Vector3f(0, 2, 0));
-
         playerNode.addControl(physicsCharacter);
-
-        // Since Jaime was created using the old animation system
-        // it needs to be converted to the new one.
-        AnimMigrationUtils.migrate(playerNode);
+        if (physicsState.getThreadingType() == ThreadingType.PARALLEL) {
+            // The character turns with the camera, only its location is interpolated
+            characterInterpolation = new PhysicsInterpolationControl(physicsCharacter.getRigidBody(), false);
+            playerNode.addControl(characterInterpolation);
+            physicsState.getPhysicsSpace().addTickListener(characterInterpolation);
+        }
 
         moveControl = new MovementControl(cam);
         playerNode.addControl(moveControl);
 
         rootNode.attachChild(playerNode);
+
+        final ShadowState shadows = getState(ShadowState.class);
+        if (shadows != null) {
+            shadows.addDynamic(playerNode);
+        }
     }
 
 }
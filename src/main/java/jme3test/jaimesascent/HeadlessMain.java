@@ -0,0 +1,256 @@
+/*
+ * Copyright (c) 2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package jme3test.jaimesascent;
+
+import com.jme3.app.SimpleApplication;
+import com.jme3.app.state.AppState;
+import com.jme3.bullet.BulletAppState;
+import com.jme3.bullet.BulletAppState.ThreadingType;
+import com.jme3.system.AppSettings;
+import com.jme3.system.JmeContext;
+import com.jme3.system.Timer;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import jme3test.jaimesascent.screen.GameGUIScreen;
+import jme3test.jaimesascent.ui.LemurGuiStyle;
+
+/**
+ *
+ * Runs the level without a window or GPU, at a fixed timestep, and reports
+ * the simulation throughput. The GUI screens are only attached with
+ * -Djaimesascent.gui=true. Meant for build agents without a display:
+ * <pre>
+ * gradle headlessRun -Djaimesascent.ticks=3600
+ * </pre>
+ * Takes the same -Djaimesascent.* settings as Main. With
+ * -Djaimesascent.allocationBudget=&lt;bytes per tick&gt; it exits with an error
+ * when the steady state allocates more than that, see the allocationCheck
+ * task. With -Djaimesascent.startupReport=&lt;file&gt; it writes the
+ * StartupTimeline there at exit.
+ */
+public class HeadlessMain extends SimpleApplication {
+
+    private static final float TIME_STEP = 1f / 60f;
+
+    /**
+     * Ticks between two samples of the thread allocations while measuring.
+     */
+    private static final int SAMPLE_TICKS = 60;
+
+    private final int warmupTicks;
+    private final boolean gui;
+    private final long[] tickTimes;
+    private final CountDownLatch finished = new CountDownLatch(1);
+    private final Map<Long, Long> threadAllocations = new HashMap<>();
+
+    private int tick = 0;
+    private long allocatedAtStart;
+    private long allocated;
+    private long measuredTime;
+
+    public HeadlessMain(int warmupTicks, int ticks, boolean gui) {
+        super((AppState[]) null);
+        this.warmupTicks = warmupTicks;
+        this.gui = gui;
+        this.tickTimes = new long[ticks];
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        StartupTimeline.mark(StartupTimeline.Category.JVM, "HeadlessMain.main");
+        final String startupReport = System.getProperty("jaimesascent.startupReport");
+        if (startupReport != null) {
+            StartupTimeline.writeAtExit(Path.of(startupReport));
+        }
+        HeadlessMain app = new HeadlessMain(Integer.getInteger("jaimesascent.warmupTicks", 600),
+                Integer.getInteger("jaimesascent.ticks", 3600), Boolean.getBoolean("jaimesascent.gui"));
+        AppSettings settings = new AppSettings(true);
+        settings.setAudioRenderer(null);
+        // the headless context caps unset frame rates at 60
+        settings.setFrameRate(Integer.MAX_VALUE);
+        Main.readSettings(settings);
+        app.setSettings(settings);
+        app.setShowSettings(false);
+        app.setTimer(new FixedTimer(TIME_STEP));
+        app.start(JmeContext.Type.Headless);
+        app.finished.await();
+        final long bytesPerTick = app.report();
+
+        final long budget = Long.getLong("jaimesascent.allocationBudget", -1);
+        if (budget >= 0 && bytesPerTick > budget) {
+            System.err.printf("Allocated %d bytes per tick, over the budget of %d%n", bytesPerTick, budget);
+            System.exit(1);
+        }
+    }
+
+    @Override
+    public void simpleInitApp() {
+        final long start = StartupTimeline.start();
+        assetManager.registerLoader(PrebuiltTextureLoader.class, "jpg", "png");
+        assetManager.addAssetEventListener(StartupTimeline.assetListener());
+        BulletAppState bulletAppState = new BulletAppState();
+        if (settings.getBoolean(Main.PARALLEL_PHYSICS)) {
+            bulletAppState.setThreadingType(ThreadingType.PARALLEL);
+        }
+        if (gui) {
+            final long lemurStart = StartupTimeline.start();
+            LemurGuiStyle.initialize(this);
+            StartupTimeline.record(StartupTimeline.Category.INIT, "LemurGuiStyle.initialize", lemurStart);
+            stateManager.attach(new GameGUIScreen());
+        }
+        stateManager.attach(new ShadowState());
+        stateManager.attach(new SceneState(bulletAppState));
+        stateManager.attach(bulletAppState);
+        stateManager.attach(new GameState(bulletAppState));
+        StartupTimeline.record(StartupTimeline.Category.INIT, "HeadlessMain.simpleInitApp", start);
+    }
+
+    @Override
+    public void update() {
+        if (tick == warmupTicks) {
+            allocatedAtStart = allocatedBytes();
+            measuredTime = System.nanoTime();
+        } else if (tick > warmupTicks && (tick - warmupTicks) % SAMPLE_TICKS == 0) {
+            allocatedBytes();
+        }
+        final long start = System.nanoTime();
+        super.update();
+        if (tick == 0) {
+            // headless draws nothing, the first tick is as far as startup goes
+            StartupTimeline.mark(StartupTimeline.Category.FRAME, "First frame");
+            StartupTimeline.finish();
+        }
+        if (tick >= warmupTicks) {
+            tickTimes[tick - warmupTicks] = System.nanoTime() - start;
+        }
+        if (++tick == warmupTicks + tickTimes.length) {
+            measuredTime = System.nanoTime() - measuredTime;
+            allocated = allocatedBytes() - allocatedAtStart;
+            stop();
+        }
+    }
+
+    @Override
+    public void destroy() {
+        super.destroy();
+        finished.countDown();
+    }
+
+    /**
+     * @return bytes allocated per tick
+     */
+    private long report() {
+        if (tick < warmupTicks + tickTimes.length) {
+            System.out.println("Simulation did not finish");
+            return Long.MAX_VALUE;
+        }
+        final long[] sorted = tickTimes.clone();
+        Arrays.sort(sorted);
+        final double seconds = measuredTime / 1e9;
+        System.out.printf("ticks=%d ticks/s=%.0f p50=%.3fms p99=%.3fms max=%.3fms alloc=%.1fMB/s (%d bytes/tick)%n",
+                sorted.length, sorted.length / seconds,
+                sorted[sorted.length / 2] / 1e6,
+                sorted[sorted.length * 99 / 100] / 1e6,
+                sorted[sorted.length - 1] / 1e6,
+                allocated / seconds / (1024 * 1024), allocated / sorted.length);
+        return allocated / sorted.length;
+    }
+
+    /**
+     * Bytes allocated so far by every thread seen, so the physics thread counts
+     * too when it runs in parallel. A thread that exited keeps the total it
+     * had when last sampled, so the sum never goes down; only a thread that
+     * starts and exits between two samples is missed.
+     */
+    private long allocatedBytes() {
+        final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        final long[] ids = threads.getAllThreadIds();
+        final long[] bytes = threads.getThreadAllocatedBytes(ids);
+        for (int i = 0; i < ids.length; i++) {
+            if (bytes[i] > 0) {
+                threadAllocations.put(ids[i], bytes[i]);
+            }
+        }
+        long total = 0;
+        for (long threadBytes : threadAllocations.values()) {
+            total += threadBytes;
+        }
+        return total;
+    }
+
+    /**
+     * Reports the same time per frame on every update, however long the frame
+     * took.
+     */
+    private static class FixedTimer extends Timer {
+
+        private final float timePerFrame;
+        private long ticks = 0;
+
+        FixedTimer(float timePerFrame) {
+            this.timePerFrame = timePerFrame;
+        }
+
+        @Override
+        public long getTime() {
+            return ticks;
+        }
+
+        @Override
+        public long getResolution() {
+            return (long) (1f / timePerFrame);
+        }
+
+        @Override
+        public float getFrameRate() {
+            return 1f / timePerFrame;
+        }
+
+        @Override
+        public float getTimePerFrame() {
+            return timePerFrame;
+        }
+
+        @Override
+        public void update() {
+            ticks++;
+        }
+
+        @Override
+        public void reset() {
+            ticks = 0;
+        }
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package jme3test.jaimesascent;
+
+import com.jme3.material.Material;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.SceneGraphIterator;
+import com.jme3.scene.Spatial;
+import com.jme3.scene.VertexBuffer;
+import com.jme3.scene.instancing.InstancedNode;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ *
+ * Draws repeated props with hardware instancing. Loaded models give every
+ * geometry its own copy of meshes and materials, so instance first makes
+ * geometries with equal meshes and materials share them, then draws each set
+ * of two or more as one InstancedGeometry. The instances follow the world
+ * transforms of the geometries, so props moved by their controls or
+ * KinematicMovers stay instanced.
+ */
+public class InstancedProps extends InstancedNode {
+
+    private int propCount = 0;
+    private int drawCount = 0;
+
+    public InstancedProps(String name) {
+        super(name);
+    }
+
+    @Override
+    public void instance() {
+        final List<List<Geometry>> groups = new ArrayList<>();
+        for (Spatial spatial : new SceneGraphIterator(this)) {
+            if (spatial instanceof Geometry geometry && !geometry.isGrouped()
+                    && geometry.getBatchHint() != BatchHint.Never) {
+                groupOf(groups, geometry).add(geometry);
+            }
+        }
+
+        for (List<Geometry> group : groups) {
+            propCount += group.size();
+            final Geometry first = group.get(0);
+            if (group.size() == 1 || first.getMaterial().getMaterialDef().getMaterialParam("UseInstancing") == null) {
+                for (Geometry geometry : group) {
+                    geometry.setBatchHint(BatchHint.Never);
+                }
+                drawCount += group.size();
+                continue;
+            }
+            drawCount++;
+            final Material material = first.getMaterial().clone();
+            material.setBoolean("UseInstancing", true);
+            for (Geometry geometry : group) {
+                geometry.setMesh(first.getMesh());
+                geometry.setMaterial(material);
+            }
+        }
+        super.instance();
+    }
+
+    /**
+     * @return geometries instanced or left as they were
+     */
+    public int getPropCount() {
+        return propCount;
+    }
+
+    /**
+     * @return draw calls the props take
+     */
+    public int getDrawCount() {
+        return drawCount;
+    }
+
+    private static List<Geometry> groupOf(List<List<Geometry>> groups, Geometry geometry) {
+        for (List<Geometry> group : groups) {
+            final Geometry other = group.get(0);
+            if (other.getMaterial().contentEquals(geometry.getMaterial())
+                    && equals(other.getMesh(), geometry.getMesh())) {
+                return group;
+            }
+        }
+        final List<Geometry> group = new ArrayList<>();
+        groups.add(group);
+        return group;
+    }
+
+    private static boolean equals(Mesh mesh, Mesh other) {
+        if (mesh == other) {
+            return true;
+        }
+        if (mesh.getMode() != other.getMode() || mesh.getBufferList().size() != other.getBufferList().size()) {
+            return false;
+        }
+        for (VertexBuffer buffer : mesh.getBufferList()) {
+            final VertexBuffer otherBuffer = other.getBuffer(buffer.getBufferType());
+            if (otherBuffer == null || buffer.getFormat() != otherBuffer.getFormat()
+                    || buffer.getNumComponents() != otherBuffer.getNumComponents()
+                    || !buffer.getData().duplicate().clear().equals(otherBuffer.getData().duplicate().clear())) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,362 @@
+/*
+ * Copyright (c) 2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package jme3test.jaimesascent;
+
+import com.jme3.bounding.BoundingBox;
+import com.jme3.bounding.BoundingSphere;
+import com.jme3.bounding.BoundingVolume;
+import com.jme3.bullet.PhysicsSpace;
+import com.jme3.bullet.PhysicsTickListener;
+import com.jme3.bullet.objects.PhysicsRigidBody;
+import com.jme3.bullet.util.CollisionShapeFactory;
+import com.jme3.math.FastMath;
+import com.jme3.math.Quaternion;
+import com.jme3.math.Transform;
+import com.jme3.math.Vector3f;
+import com.jme3.scene.Spatial;
+import java.util.Arrays;
+
+/**
+ *
+ * Moves all kinematic level machinery (platforms and propellers) in one place.
+ * The movers are kept in primitive arrays and stepped in a single loop from
+ * prePhysicsTick, at the physics rate, writing straight to their rigid bodies.
+ * update() interpolates the rendered pose between the last two steps. Nothing
+ * is allocated per frame.
+ * <p>
+ * Movers further than the activity radius from the activity center pause:
+ * their phase, their body and their rendered pose all stay where they are, so
+ * the physics space only sees the machinery near the player move, and what
+ * is drawn is always where the body is. When they come back in range they
+ * carry on from there, the body never jumps.
+ */
+public class KinematicMovers implements PhysicsTickListener {
+
+    private int size = 0;
+    private boolean resolved = false;
+
+    private Spatial[] spatials = new Spatial[16];
+    private PhysicsRigidBody[] bodies = new PhysicsRigidBody[16];
+    private boolean[] rotating = new boolean[16];
+
+    // Local space, as laid out in the level. Vectors are packed by 3,
+    // quaternions by 4.
+    private float[] axis = new float[16 * 3];
+    private float[] origin = new float[16 * 3];
+    private float[] baseRotation = new float[16 * 4];
+    private float[] speed = new float[16];
+    private float[] range = new float[16];
+
+    // World space, resolved from the parents once the level is attached
+    private float[] worldAxis = new float[16 * 3];
+    private float[] worldOrigin = new float[16 * 3];
+    private float[] worldRotation = new float[16 * 4];
+
+    // Distance travelled or angle turned, and the value of the last two steps
+    private float[] phase = new float[16];
+    private float[] previous = new float[16];
+    private float[] current = new float[16];
+
+    // Bounding radius in world space, and whether the mover is moving
+    private float[] extent = new float[16];
+    private boolean[] active = new boolean[16];
+
+    private final Vector3f activityCenter = new Vector3f();
+    private float activityRadius = Float.POSITIVE_INFINITY;
+    private int activeCount = 0;
+
+    private float stepTime = 1f / 60f;
+    private float sinceStep = 0f;
+
+    private final Vector3f location = new Vector3f();
+    private final Quaternion rotation = new Quaternion();
+    private final Vector3f stepLocation = new Vector3f();
+    private final Quaternion stepRotation = new Quaternion();
+
+    /**
+     * Adds a platform that moves back and forth along an axis of its parent.
+     *
+     * @param spatial the platform
+     * @param axis the direction to move in, in parent space
+     * @param speed distance per second
+     * @param range maximum distance from the start position
+     * @return the index of the mover
+     */
+    public int addPlatform(Spatial spatial, Vector3f axis, float speed, float range) {
+        return add(spatial, false, axis, speed, range);
+    }
+
+    /**
+     * Adds a propeller that spins around one of its own axes.
+     *
+     * @param spatial the propeller
+     * @param axis the axis to spin around, in local space
+     * @param speed radians per second
+     * @return the index of the mover
+     */
+    public int addPropeller(Spatial spatial, Vector3f axis, float speed) {
+        return add(spatial, true, axis, speed, 0f);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public Spatial getSpatial(int index) {
+        return spatials[index];
+    }
+
+    public PhysicsRigidBody getBody(int index) {
+        return bodies[index];
+    }
+
+    /**
+     * Only movers within the radius of the center move.
+     *
+     * @param center usually the player location
+     * @param radius the activity radius, infinite to keep every mover active
+     */
+    public synchronized void setActivity(Vector3f center, float radius) {
+        activityCenter.set(center);
+        activityRadius = radius;
+    }
+
+    /**
+     * @return the number of movers that moved last step
+     */
+    public synchronized int getActiveCount() {
+        return activeCount;
+    }
+
+    public void addToSpace(PhysicsSpace space) {
+        for (int i = 0; i < size; i++) {
+            space.addCollisionObject(bodies[i]);
+        }
+        space.addTickListener(this);
+    }
+
+    public void removeFromSpace(PhysicsSpace space) {
+        space.removeTickListener(this);
+        for (int i = 0; i < size; i++) {
+            space.removeCollisionObject(bodies[i]);
+        }
+    }
+
+    private int add(Spatial spatial, boolean rotates, Vector3f moveAxis, float moveSpeed, float moveRange) {
+        if (size == spatials.length) {
+            grow(size * 2);
+        }
+        final int i = size++;
+        final Vector3f unit = moveAxis.normalize();
+        final Vector3f translation = spatial.getLocalTranslation();
+        final Quaternion localRotation = spatial.getLocalRotation();
+
+        spatials[i] = spatial;
+        rotating[i] = rotates;
+        axis[i * 3] = unit.x;
+        axis[i * 3 + 1] = unit.y;
+        axis[i * 3 + 2] = unit.z;
+        origin[i * 3] = translation.x;
+        origin[i * 3 + 1] = translation.y;
+        origin[i * 3 + 2] = translation.z;
+        baseRotation[i * 4] = localRotation.getX();
+        baseRotation[i * 4 + 1] = localRotation.getY();
+        baseRotation[i * 4 + 2] = localRotation.getZ();
+        baseRotation[i * 4 + 3] = localRotation.getW();
+        speed[i] = moveSpeed;
+        range[i] = moveRange;
+        phase[i] = previous[i] = current[i] = 0f;
+        active[i] = true;
+
+        PhysicsRigidBody body = new PhysicsRigidBody(CollisionShapeFactory.createMeshShape(spatial), 0f);
+        body.setKinematic(true);
+        body.setUserObject(spatial);
+        body.setPhysicsLocation(spatial.getWorldTranslation());
+        body.setPhysicsRotation(spatial.getWorldRotation());
+        bodies[i] = body;
+
+        resolved = false;
+        return i;
+    }
+
+    private void grow(int capacity) {
+        spatials = Arrays.copyOf(spatials, capacity);
+        bodies = Arrays.copyOf(bodies, capacity);
+        rotating = Arrays.copyOf(rotating, capacity);
+        axis = Arrays.copyOf(axis, capacity * 3);
+        origin = Arrays.copyOf(origin, capacity * 3);
+        baseRotation = Arrays.copyOf(baseRotation, capacity * 4);
+        speed = Arrays.copyOf(speed, capacity);
+        range = Arrays.copyOf(range, capacity);
+        worldAxis = Arrays.copyOf(worldAxis, capacity * 3);
+        worldOrigin = Arrays.copyOf(worldOrigin, capacity * 3);
+        worldRotation = Arrays.copyOf(worldRotation, capacity * 4);
+        phase = Arrays.copyOf(phase, capacity);
+        previous = Arrays.copyOf(previous, capacity);
+        current = Arrays.copyOf(current, capacity);
+        extent = Arrays.copyOf(extent, capacity);
+        active = Arrays.copyOf(active, capacity);
+    }
+
+    /**
+     * Bakes the parent transforms into world space origins, axes and
+     * rotations, so the physics step never touches the scene graph.
+     */
+    private void resolve() {
+        for (int i = 0; i < size; i++) {
+            final Spatial parent = spatials[i].getParent();
+            final Transform parentTransform = parent == null ? Transform.IDENTITY : parent.getWorldTransform();
+            final Quaternion parentRotation = parentTransform.getRotation();
+            final Vector3f parentScale = parentTransform.getScale();
+
+            location.set(origin[i * 3], origin[i * 3 + 1], origin[i * 3 + 2]);
+            parentTransform.transformVector(location, stepLocation);
+            worldOrigin[i * 3] = stepLocation.x;
+            worldOrigin[i * 3 + 1] = stepLocation.y;
+            worldOrigin[i * 3 + 2] = stepLocation.z;
+
+            location.set(axis[i * 3], axis[i * 3 + 1], axis[i * 3 + 2]).multLocal(parentScale);
+            parentRotation.mult(location, stepLocation);
+            worldAxis[i * 3] = stepLocation.x;
+            worldAxis[i * 3 + 1] = stepLocation.y;
+            worldAxis[i * 3 + 2] = stepLocation.z;
+
+            rotation.set(baseRotation[i * 4], baseRotation[i * 4 + 1], baseRotation[i * 4 + 2], baseRotation[i * 4 + 3]);
+            parentRotation.mult(rotation, rotation);
+            worldRotation[i * 4] = rotation.getX();
+            worldRotation[i * 4 + 1] = rotation.getY();
+            worldRotation[i * 4 + 2] = rotation.getZ();
+            worldRotation[i * 4 + 3] = rotation.getW();
+
+            // covers the whole range of a platform and any angle of a propeller
+            final BoundingVolume bound = spatials[i].getWorldBound();
+            extent[i] = range[i] * parentScale.length()
+                    + (bound == null ? 0f : bound.getCenter().distance(spatials[i].getWorldTranslation())
+                    + (bound instanceof BoundingBox box ? box.getExtent(location).length()
+                            : bound instanceof BoundingSphere sphere ? sphere.getRadius() : 0f));
+        }
+        resolved = true;
+    }
+
+    /**
+     * Interpolates the rendered pose of every mover. Called once per frame
+     * from the render thread.
+     *
+     * @param tpf time per frame
+     */
+    public void update(float tpf) {
+        synchronized (this) {
+            if (!resolved) {
+                resolve();
+            }
+            sinceStep += tpf;
+            final float alpha = FastMath.clamp(sinceStep / stepTime, 0f, 1f);
+            for (int i = 0; i < size; i++) {
+                final float value = previous[i] + (current[i] - previous[i]) * alpha;
+                if (rotating[i]) {
+                    spin(baseRotation, i, value, rotation);
+                    spatials[i].setLocalRotation(rotation);
+                } else {
+                    location.set(origin[i * 3] + axis[i * 3] * value,
+                            origin[i * 3 + 1] + axis[i * 3 + 1] * value,
+                            origin[i * 3 + 2] + axis[i * 3 + 2] * value);
+                    spatials[i].setLocalTranslation(location);
+                }
+            }
+        }
+    }
+
+    @Override
+    public synchronized void prePhysicsTick(PhysicsSpace space, float timeStep) {
+        if (!resolved) {
+            return;
+        }
+        stepTime = timeStep;
+        sinceStep = 0f;
+        activeCount = 0;
+        for (int i = 0; i < size; i++) {
+            final float dx = worldOrigin[i * 3] - activityCenter.x;
+            final float dy = worldOrigin[i * 3 + 1] - activityCenter.y;
+            final float dz = worldOrigin[i * 3 + 2] - activityCenter.z;
+            final float reach = activityRadius + extent[i];
+            active[i] = dx * dx + dy * dy + dz * dz <= reach * reach;
+            previous[i] = current[i];
+            if (!active[i]) {
+                continue;
+            }
+            activeCount++;
+
+            float p = phase[i] + speed[i] * timeStep;
+            if (rotating[i]) {
+                if (p >= FastMath.TWO_PI) {
+                    p -= FastMath.TWO_PI;
+                    // keep the interpolation going forward over the wrap
+                    previous[i] -= FastMath.TWO_PI;
+                }
+                current[i] = p;
+                spin(worldRotation, i, p, stepRotation);
+                bodies[i].setPhysicsRotation(stepRotation);
+            } else {
+                // down to -range, up to +range and back to the start
+                final float r = range[i];
+                if (p >= 4f * r) {
+                    p -= 4f * r;
+                }
+                final float offset = p < r ? -p : p < 3f * r ? p - 2f * r : 4f * r - p;
+                current[i] = offset;
+                stepLocation.set(worldOrigin[i * 3] + worldAxis[i * 3] * offset,
+                        worldOrigin[i * 3 + 1] + worldAxis[i * 3 + 1] * offset,
+                        worldOrigin[i * 3 + 2] + worldAxis[i * 3 + 2] * offset);
+                bodies[i].setPhysicsLocation(stepLocation);
+            }
+            phase[i] = p;
+        }
+    }
+
+    @Override
+    public void physicsTick(PhysicsSpace space, float timeStep) {
+    }
+
+    /**
+     * Stores the rotation q[i] * (angle around axis[i]).
+     */
+    private void spin(float[] q, int i, float angle, Quaternion store) {
+        final float s = FastMath.sin(angle * 0.5f);
+        final float bx = axis[i * 3] * s, by = axis[i * 3 + 1] * s, bz = axis[i * 3 + 2] * s;
+        final float bw = FastMath.cos(angle * 0.5f);
+        final float ax = q[i * 4], ay = q[i * 4 + 1], az = q[i * 4 + 2], aw = q[i * 4 + 3];
+        store.set(aw * bx + ax * bw + ay * bz - az * by,
+                aw * by - ax * bz + ay * bw + az * bx,
+                aw * bz + ax * by - ay * bx + az * bw,
+                aw * bw - ax * bx - ay * by - az * bz);
+    }
+}
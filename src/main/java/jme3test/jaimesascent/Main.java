@@ -33,10 +33,16 @@ package jme3test.jaimesascent;
 
 import com.jme3.app.SimpleApplication;
 import com.jme3.bullet.BulletAppState;
+import com.jme3.bullet.BulletAppState.ThreadingType;
 import com.jme3.renderer.RenderManager;
 import com.jme3.system.AppSettings;
 import com.simsilica.lemur.GuiGlobals;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import jme3test.jaimesascent.screen.GameGUIScreen;
+import jme3test.jaimesascent.screen.LoadingScreen;
 import jme3test.jaimesascent.ui.LemurGuiStyle;
 
 /**
@@ -47,34 +53,164 @@ import jme3test.jaimesascent.ui.LemurGuiStyle;
  */
 public class Main extends SimpleApplication {
 
+    /**
+     * Settings key. When true, the physics space steps on its own thread while
+     * the scene renders. Can be enabled with -Djaimesascent.parallelPhysics=true
+     */
+    public static final String PARALLEL_PHYSICS = "ParallelPhysics";
+
+    /**
+     * Settings key. Cell size the level statics are split into StaticChunks
+     * with, 0 keeps them as one mesh. Can be set with
+     * -Djaimesascent.staticChunkSize=8
+     */
+    public static final String STATIC_CHUNK_SIZE = "StaticChunkSize";
+
+    /**
+     * Settings key. Name of the PhysicsSpace.BroadphaseType, sized to the level
+     * by SceneState. Can be set with -Djaimesascent.broadphase=AXIS_SWEEP_3
+     */
+    public static final String BROADPHASE = "Broadphase";
+
+    /**
+     * Settings key. Name of the ShadowState.Quality tier. Can be set with
+     * -Djaimesascent.shadowQuality=LOW
+     */
+    public static final String SHADOW_QUALITY = "ShadowQuality";
+
+    /**
+     * Settings key. Cell size the static level geometry is batched into
+     * StaticBatches with, 0 draws it as loaded. Can be set with
+     * -Djaimesascent.staticBatchSize=0
+     */
+    public static final String STATIC_BATCH_SIZE = "StaticBatchSize";
+
+    /**
+     * Settings key. When true, level and character meshes get MeshLods. Can be
+     * disabled with -Djaimesascent.meshLods=false
+     */
+    public static final String MESH_LODS = "MeshLods";
+
+    /**
+     * Settings key. Cell size of the CellVisibility grid the level is culled
+     * with, 0 leaves only frustum culling. Can be set with
+     * -Djaimesascent.visibilityCellSize=4
+     */
+    public static final String VISIBILITY_CELL_SIZE = "VisibilityCellSize";
+
+    /**
+     * Settings key. Frame rate DynamicResolutionState holds by scaling the
+     * scene's resolution, 0 keeps it native. Can be set with
+     * -Djaimesascent.targetFrameRate=30
+     */
+    public static final String TARGET_FRAME_RATE = "TargetFrameRate";
+
     private BulletAppState bulletAppState;
     private SceneState sceneState;
     private GameState gameState;
+    private boolean frameShown;
+    private boolean levelShown;
 
     public static void main(String[] args) {
+        StartupTimeline.mark(StartupTimeline.Category.JVM, "Main.main");
+        final String startupReport = System.getProperty("jaimesascent.startupReport");
+        if (startupReport != null) {
+            StartupTimeline.writeAtExit(Path.of(startupReport));
+        }
         Main app = new Main();
         AppSettings settings = new AppSettings(true);
         settings.setRenderer(AppSettings.LWJGL_OPENGL33);
         settings.setAudioRenderer(AppSettings.LWJGL_OPENAL);
+        readSettings(settings);
         app.setSettings(settings);
 
         app.start();
     }
 
+    /**
+     * Reads the game settings from the -Djaimesascent.* system properties.
+     *
+     * @param settings the settings to fill
+     */
+    public static void readSettings(AppSettings settings) {
+        settings.putBoolean(PARALLEL_PHYSICS, Boolean.getBoolean("jaimesascent.parallelPhysics"));
+        settings.putFloat(STATIC_CHUNK_SIZE, Float.parseFloat(System.getProperty("jaimesascent.staticChunkSize", "0")));
+        settings.putString(BROADPHASE, System.getProperty("jaimesascent.broadphase", "DBVT"));
+        settings.putString(SHADOW_QUALITY, System.getProperty("jaimesascent.shadowQuality", "MEDIUM"));
+        settings.putFloat(STATIC_BATCH_SIZE, Float.parseFloat(System.getProperty("jaimesascent.staticBatchSize", "32")));
+        settings.putBoolean(MESH_LODS, Boolean.parseBoolean(System.getProperty("jaimesascent.meshLods", "true")));
+        settings.putFloat(VISIBILITY_CELL_SIZE, Float.parseFloat(System.getProperty("jaimesascent.visibilityCellSize", "0")));
+        settings.putInteger(TARGET_FRAME_RATE, Integer.getInteger("jaimesascent.targetFrameRate", 60));
+    }
+
     @Override
     public void simpleInitApp() {        
+        final long start = StartupTimeline.start();
         flyCam.setEnabled(false);
         flyCam.unregisterInput();
+        assetManager.registerLoader(PrebuiltTextureLoader.class, "jpg", "png");
+        assetManager.addAssetEventListener(StartupTimeline.assetListener());
         
+        final long lemurStart = StartupTimeline.start();
         LemurGuiStyle.initialize(this);
+        StartupTimeline.record(StartupTimeline.Category.INIT, "LemurGuiStyle.initialize", lemurStart);
         
         bulletAppState = new BulletAppState();
+        if (settings.getBoolean(PARALLEL_PHYSICS)) {
+            bulletAppState.setThreadingType(ThreadingType.PARALLEL);
+        }
         gameState = new GameState(bulletAppState);
         sceneState = new SceneState(bulletAppState);
         stateManager.attach(new GameGUIScreen());
-        stateManager.attach(bulletAppState);
-        stateManager.attach(gameState);
-        stateManager.attach(sceneState);
+        stateManager.attach(new ShadowState());
+        stateManager.attach(new DynamicResolutionState());
+
+        final LoadingScreen loadingScreen = new LoadingScreen();
+        stateManager.attach(loadingScreen);
+        // the level and Jaime load side by side, off the render thread
+        final ExecutorService loader = Executors.newFixedThreadPool(
+                Math.min(2, Runtime.getRuntime().availableProcessors()), runnable -> {
+                    final Thread thread = new Thread(runnable, "Level loader");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        final float[] shares = new float[2];
+        CompletableFuture.allOf(
+                CompletableFuture.runAsync(() -> sceneState.load(assetManager, settings,
+                        share(loadingScreen, shares, 0, 0.6f)), loader),
+                CompletableFuture.runAsync(() -> gameState.load(assetManager, settings,
+                        share(loadingScreen, shares, 1, 0.4f)), loader)
+        ).whenComplete((result, error) -> enqueue(() -> {
+            if (error != null) {
+                handleError("Could not load the level", error.getCause());
+                return;
+            }
+            // only attaching the loaded level happens on the render thread
+            stateManager.detach(loadingScreen);
+            // the scene configures the physics space, so it goes first
+            stateManager.attach(sceneState);
+            stateManager.attach(bulletAppState);
+            stateManager.attach(gameState);
+        }));
+        loader.shutdown();
+        StartupTimeline.record(StartupTimeline.Category.INIT, "Main.simpleInitApp", start);
+    }
+
+    /**
+     * @return a listener showing its weighted share of the progress summed
+     * with the other shares
+     */
+    private static LoadingListener share(LoadingScreen screen, float[] shares, int index, float weight) {
+        return (step, progress) -> {
+            synchronized (shares) {
+                shares[index] = weight * progress;
+                float total = 0;
+                for (float share : shares) {
+                    total += share;
+                }
+                screen.setProgress(step, total);
+            }
+        };
     }
     
     public AppSettings getSettings() {
@@ -83,9 +219,25 @@ public class Main extends SimpleApplication {
 
     @Override
     public void simpleUpdate(float tpf) {
+        if (!levelShown && gameState.isInitialized()) {
+            // compiles the level's shaders here rather than while drawing it
+            final long start = StartupTimeline.start();
+            renderManager.preloadScene(rootNode);
+            renderManager.preloadScene(guiNode);
+            StartupTimeline.record(StartupTimeline.Category.SHADER, "RenderManager.preloadScene", start);
+        }
     }
 
     @Override
     public void simpleRender(RenderManager rm) {
+        if (!frameShown) {
+            frameShown = true;
+            StartupTimeline.mark(StartupTimeline.Category.FRAME, "First frame");
+        }
+        if (!levelShown && gameState.isInitialized()) {
+            levelShown = true;
+            StartupTimeline.mark(StartupTimeline.Category.FRAME, "First level frame");
+            StartupTimeline.finish();
+        }
     }
 }
@@ -0,0 +1,214 @@
+/*
+ * Copyright (c) 2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package jme3test.jaimesascent;
+
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.SceneGraphIterator;
+import com.jme3.scene.Spatial;
+import com.jme3.scene.VertexBuffer;
+import com.jme3.scene.control.LodControl;
+import com.jme3.scene.mesh.IndexBuffer;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32C;
+import jme3tools.optimize.LodGenerator;
+
+/**
+ *
+ * Gives meshes reduced levels of detail with LodGenerator, and their
+ * geometries a LodControl that picks a level from the screen size of the
+ * bound, so far geometry draws a fraction of its triangles. Generating takes
+ * about a second for the level and Jaime, so the levels are cached on disk
+ * like the collision BVH, keyed by a hash of the meshes.
+ */
+public final class MeshLods {
+
+    private static final Logger LOG = Logger.getLogger(MeshLods.class.getName());
+
+    /**
+     * Bump when the reductions or the file layout change, to invalidate old
+     * files.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * Share of the triangles each level removes.
+     */
+    private static final float[] REDUCTIONS = {0.5f, 0.75f, 0.9f};
+
+    /**
+     * Meshes with fewer triangles are not worth reducing.
+     */
+    private static final int MIN_TRIANGLES = 128;
+
+    /**
+     * Triangles a geometry may draw per pixel of its bound on screen. The
+     * default of 1 keeps the level at full detail even seen from far above.
+     */
+    private static final float TRIS_PER_PIXEL = 0.1f;
+
+    private MeshLods() {
+    }
+
+    /**
+     * Generates the levels of the meshes under the spatial and adds a
+     * LodControl to their geometries.
+     *
+     * @param spatial the geometry to reduce
+     * @param assetPath the asset the spatial was loaded from, used to name the
+     * cache file, or null to not cache
+     */
+    public static void generate(Spatial spatial, String assetPath) {
+        final List<Geometry> geometries = new ArrayList<>();
+        final Set<Mesh> meshes = new LinkedHashSet<>();
+        for (Spatial child : new SceneGraphIterator(spatial)) {
+            // instanced geometries are drawn by their InstancedGeometry
+            if (child instanceof Geometry geometry && !geometry.isGrouped()
+                    && geometry.getMesh().getMode() == Mesh.Mode.Triangles
+                    && geometry.getMesh().getIndexBuffer() != null
+                    && geometry.getMesh().getTriangleCount() >= MIN_TRIANGLES) {
+                geometries.add(geometry);
+                meshes.add(geometry.getMesh());
+            }
+        }
+        if (meshes.isEmpty()) {
+            return;
+        }
+
+        final String prefix = assetPath == null ? null : new File(assetPath).getName() + "." + spatial.getName();
+        final File file = prefix == null ? null : CollisionShapeCache.cacheFile(prefix, hash(meshes) + ".lod");
+        if (file == null || !read(file, meshes)) {
+            for (Mesh mesh : meshes) {
+                new LodGenerator(mesh).bakeLods(LodGenerator.TriangleReductionMethod.PROPORTIONAL, REDUCTIONS);
+            }
+            if (file != null) {
+                write(file, prefix, meshes);
+            }
+        }
+
+        for (Geometry geometry : geometries) {
+            if (geometry.getControl(LodControl.class) == null) {
+                final LodControl control = new LodControl();
+                control.setTrisPerPixel(TRIS_PER_PIXEL);
+                geometry.addControl(control);
+            }
+        }
+    }
+
+    /**
+     * @return true when every mesh got its levels from the file
+     */
+    private static boolean read(File file, Set<Mesh> meshes) {
+        if (!file.isFile()) {
+            return false;
+        }
+        try {
+            final ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+            final long checksum = data.getLong();
+            final byte[] levels = new byte[data.remaining()];
+            data.get(levels);
+            if (checksum != CollisionShapeCache.checksum(levels)) {
+                LOG.log(Level.WARNING, "Mesh LOD cache {0} is corrupt, rebuilding.", file);
+                return false;
+            }
+            final IntBuffer ints = ByteBuffer.wrap(levels).asIntBuffer();
+            for (Mesh mesh : meshes) {
+                final VertexBuffer[] lods = new VertexBuffer[ints.get()];
+                for (int i = 0; i < lods.length; i++) {
+                    final IndexBuffer indices = IndexBuffer.createIndexBuffer(mesh.getVertexCount(), ints.get());
+                    for (int j = 0; j < indices.size(); j++) {
+                        indices.put(j, ints.get());
+                    }
+                    lods[i] = new VertexBuffer(VertexBuffer.Type.Index);
+                    lods[i].setupData(VertexBuffer.Usage.Static, 3, indices.getFormat(), indices.getBuffer());
+                }
+                mesh.setLodLevels(lods);
+            }
+            return true;
+        } catch (IOException | RuntimeException exception) {
+            LOG.log(Level.WARNING, "Unable to read mesh LOD cache {0}, rebuilding.", file);
+            return false;
+        }
+    }
+
+    private static void write(File file, String prefix, Set<Mesh> meshes) {
+        int size = 0;
+        for (Mesh mesh : meshes) {
+            size++;
+            for (int i = 0; i < mesh.getNumLodLevels(); i++) {
+                size += 1 + mesh.getLodLevel(i).getNumElements() * mesh.getLodLevel(i).getNumComponents();
+            }
+        }
+        final ByteBuffer levels = ByteBuffer.allocate(size * Integer.BYTES);
+        for (Mesh mesh : meshes) {
+            levels.putInt(mesh.getNumLodLevels());
+            for (int i = 0; i < mesh.getNumLodLevels(); i++) {
+                final IndexBuffer indices = IndexBuffer.wrapIndexBuffer(mesh.getLodLevel(i).getData());
+                levels.putInt(indices.size());
+                for (int j = 0; j < indices.size(); j++) {
+                    levels.putInt(indices.get(j));
+                }
+            }
+        }
+        try {
+            CollisionShapeCache.writeCache(file, prefix, levels.array());
+        } catch (IOException exception) {
+            LOG.log(Level.WARNING, "Unable to write mesh LOD cache {0}.", file);
+        }
+    }
+
+    private static String hash(Set<Mesh> meshes) {
+        final CRC32C crc = new CRC32C();
+        int triangles = 0;
+        final ByteBuffer header = ByteBuffer.allocate(Integer.BYTES * (1 + REDUCTIONS.length));
+        header.putInt(VERSION);
+        for (float reduction : REDUCTIONS) {
+            header.putFloat(reduction);
+        }
+        crc.update(header.flip());
+        for (Mesh mesh : meshes) {
+            triangles += mesh.getTriangleCount();
+            CollisionShapeCache.update(crc, mesh);
+        }
+        return Long.toHexString(crc.getValue()) + "-" + triangles;
+    }
+}
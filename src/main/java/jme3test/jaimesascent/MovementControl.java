@@ -53,6 +53,8 @@ public class MovementControl extends AbstractControl implements ActionListener {
 
     final private Vector3f walkDirection = new Vector3f(0, 0, 0);
     final private Vector3f viewDirection = new Vector3f(0, 0, 1);
+    final private Vector3f modelForwardDir = new Vector3f();
+    final private Vector3f modelLeftDir = new Vector3f();
     final private float moveSpeed = 3f;
 
     private boolean leftStrafe = false, rightStrafe = false, forward = false, backward = false;
@@ -69,19 +71,19 @@ public class MovementControl extends AbstractControl implements ActionListener {
 
     @Override
     public void controlUpdate(float tpf) {
-        final Vector3f modelForwardDir = spatial.getWorldRotation().mult(Vector3f.UNIT_Z);
-        final Vector3f modelLeftDir = spatial.getWorldRotation().mult(Vector3f.UNIT_X);
+        spatial.getWorldRotation().mult(Vector3f.UNIT_Z, modelForwardDir);
+        spatial.getWorldRotation().mult(Vector3f.UNIT_X, modelLeftDir);
 
         walkDirection.set(0, 0, 0);
         if (leftStrafe) {
             walkDirection.addLocal(modelLeftDir);
         } else if (rightStrafe) {
-            walkDirection.addLocal(modelLeftDir.negate());
+            walkDirection.subtractLocal(modelLeftDir);
         }
         if (forward) {
             walkDirection.addLocal(modelForwardDir);
         } else if (backward) {
-            walkDirection.addLocal(modelForwardDir.negate());
+            walkDirection.subtractLocal(modelForwardDir);
         }
         physicsCharacter.setWalkDirection(walkDirection.multLocal(moveSpeed));
 
@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package jme3test.jaimesascent;
+
+import com.jme3.bullet.PhysicsSpace;
+import com.jme3.bullet.PhysicsTickListener;
+import com.jme3.bullet.objects.PhysicsRigidBody;
+import com.jme3.math.FastMath;
+import com.jme3.math.Quaternion;
+import com.jme3.math.Vector3f;
+import com.jme3.renderer.RenderManager;
+import com.jme3.renderer.ViewPort;
+import com.jme3.scene.Node;
+import com.jme3.scene.control.AbstractControl;
+
+/**
+ *
+ * Interpolates the visual transform of a spatial between the last two physics
+ * steps of its rigid body. Used when the physics space steps on its own thread:
+ * the transform is snapshotted in physicsTick, and the spatial follows the
+ * snapshots instead of jumping with every step. The physics controls, and
+ * BallShooter, still read body state on the render thread; that is safe only
+ * because the PARALLEL threading mode joins the step in postRender, before
+ * the next update. Must be added after the physics control of the spatial,
+ * so it runs last.
+ */
+public class PhysicsInterpolationControl extends AbstractControl implements PhysicsTickListener {
+
+    private final PhysicsRigidBody body;
+    private final boolean interpolateRotation;
+
+    private final Vector3f previousLocation = new Vector3f();
+    private final Vector3f currentLocation = new Vector3f();
+    private final Quaternion previousRotation = new Quaternion();
+    private final Quaternion currentRotation = new Quaternion();
+
+    private final Vector3f location = new Vector3f();
+    private final Quaternion rotation = new Quaternion();
+    private final Quaternion parentRotation = new Quaternion();
+
+    private float stepTime = 1f / 60f;
+    private float sinceStep = 0f;
+
+    /**
+     * @param body the body to follow
+     * @param interpolateRotation false to leave the rotation to the physics
+     * control (for example a character that turns with the camera)
+     */
+    public PhysicsInterpolationControl(PhysicsRigidBody body, boolean interpolateRotation) {
+        this.body = body;
+        this.interpolateRotation = interpolateRotation;
+        reset();
+    }
+
+    /**
+     * Snaps both physics states to the current body transform, e.g. after a
+     * teleport.
+     */
+    public synchronized void reset() {
+        body.getPhysicsLocation(currentLocation);
+        body.getPhysicsRotation(currentRotation);
+        previousLocation.set(currentLocation);
+        previousRotation.set(currentRotation);
+        sinceStep = 0f;
+    }
+
+    @Override
+    public void prePhysicsTick(PhysicsSpace space, float timeStep) {
+    }
+
+    @Override
+    public synchronized void physicsTick(PhysicsSpace space, float timeStep) {
+        previousLocation.set(currentLocation);
+        previousRotation.set(currentRotation);
+        body.getPhysicsLocation(currentLocation);
+        body.getPhysicsRotation(currentRotation);
+        stepTime = timeStep;
+        sinceStep = 0f;
+    }
+
+    @Override
+    protected void controlUpdate(float tpf) {
+        synchronized (this) {
+            sinceStep += tpf;
+            float alpha = FastMath.clamp(sinceStep / stepTime, 0f, 1f);
+            location.interpolateLocal(previousLocation, currentLocation, alpha);
+            if (interpolateRotation) {
+                rotation.slerp(previousRotation, currentRotation, alpha);
+            }
+        }
+
+        Node parent = spatial.getParent();
+        if (parent != null) {
+            parent.worldToLocal(location, location);
+            if (interpolateRotation) {
+                parentRotation.set(parent.getWorldRotation()).inverseLocal();
+                rotation.set(parentRotation.multLocal(rotation));
+            }
+        }
+        spatial.setLocalTranslation(location);
+        if (interpolateRotation) {
+            spatial.setLocalRotation(rotation);
+        }
+    }
+
+    @Override
+    protected void controlRender(RenderManager rm, ViewPort vp) {
+    }
+
+}
@@ -4,33 +4,95 @@
  */
 package jme3test.jaimesascent;
 
+import com.jme3.bullet.PhysicsSpace;
+import com.jme3.bullet.PhysicsTickListener;
+import com.jme3.bullet.control.RigidBodyControl;
+import com.jme3.math.FastMath;
+import com.jme3.math.Transform;
+import com.jme3.math.Vector3f;
 import com.jme3.renderer.RenderManager;
 import com.jme3.renderer.ViewPort;
+import com.jme3.scene.Spatial;
 import com.jme3.scene.control.AbstractControl;
 
 /**
  *
- * Moves platforms up and down
+ * Moves platforms up and down. The platform is moved at the physics rate, from
+ * prePhysicsTick, and the rendered position is interpolated between the last
+ * two steps, so the path does not depend on the frame rate. Must be registered
+ * as a tick listener of the physics space.
  *
  * @author rickard
  */
-public class PlatformControl extends AbstractControl {
+public class PlatformControl extends AbstractControl implements PhysicsTickListener {
 
     private boolean directionUp = false;
     private final float maxDistance = 2f;
     private final float velocity = 1f;
 
+    private RigidBodyControl body;
+    private final Transform parentTransform = new Transform();
+    private boolean ready = false;
+
+    private float previousHeight;
+    private float currentHeight;
+    private float stepTime = 1f / 60f;
+    private float sinceStep = 0f;
+
+    private final Vector3f origin = new Vector3f();
+    private final Vector3f location = new Vector3f();
+    private final Vector3f stepLocation = new Vector3f();
+    private final Vector3f physicsLocation = new Vector3f();
+
     @Override
-    protected void controlUpdate(float tpf) {
-        if (directionUp && spatial.getLocalTranslation().y < maxDistance) {
-            spatial.move(0, velocity * tpf, 0);
-            return;
+    public void setSpatial(Spatial spatial) {
+        super.setSpatial(spatial);
+        if (spatial != null) {
+            origin.set(spatial.getLocalTranslation());
+            currentHeight = previousHeight = origin.y;
+            body = spatial.getControl(RigidBodyControl.class);
+            // the body is moved from the physics tick, not from the spatial
+            body.setKinematicSpatial(false);
         }
-        if (!directionUp && spatial.getLocalTranslation().y > -maxDistance) {
-            spatial.move(0, -velocity * tpf, 0);
+    }
+
+    @Override
+    public synchronized void prePhysicsTick(PhysicsSpace space, float timeStep) {
+        if (!ready || !isEnabled()) {
             return;
         }
-        directionUp = !directionUp;
+        previousHeight = currentHeight;
+        if (directionUp && currentHeight < maxDistance) {
+            currentHeight += velocity * timeStep;
+        } else if (!directionUp && currentHeight > -maxDistance) {
+            currentHeight -= velocity * timeStep;
+        } else {
+            directionUp = !directionUp;
+        }
+        stepTime = timeStep;
+        sinceStep = 0f;
+
+        stepLocation.set(origin.x, currentHeight, origin.z);
+        parentTransform.transformVector(stepLocation, physicsLocation);
+        body.setPhysicsLocation(physicsLocation);
+    }
+
+    @Override
+    public void physicsTick(PhysicsSpace space, float timeStep) {
+    }
+
+    @Override
+    protected void controlUpdate(float tpf) {
+        float height;
+        synchronized (this) {
+            if (spatial.getParent() != null) {
+                parentTransform.set(spatial.getParent().getWorldTransform());
+                ready = true;
+            }
+            sinceStep += tpf;
+            height = FastMath.interpolateLinear(FastMath.clamp(sinceStep / stepTime, 0f, 1f), previousHeight, currentHeight);
+        }
+        spatial.setLocalTranslation(location.set(origin.x, height, origin.z));
     }
 
     @Override
@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package jme3test.jaimesascent;
+
+import com.jme3.asset.AssetInfo;
+import com.jme3.asset.AssetLoader;
+import com.jme3.asset.TextureKey;
+import com.jme3.asset.plugins.ClasspathLocator;
+import com.jme3.texture.plugins.AWTLoader;
+import com.jme3.texture.plugins.DDSLoader;
+import java.io.IOException;
+
+/**
+ *
+ * Loads the DDS that the compileTextures task built for a jpg or png, when
+ * there is one, so the image comes compressed and with its mips already in
+ * place. Anything else is decoded from the original file. The DDS is looked
+ * up on the classpath, where the assets jar is, because the asset manager
+ * warns about every asset it cannot locate.
+ */
+public class PrebuiltTextureLoader implements AssetLoader {
+
+    private final ClasspathLocator locator = new ClasspathLocator();
+    private final DDSLoader ddsLoader = new DDSLoader();
+    private final AWTLoader fallback = new AWTLoader();
+
+    @Override
+    public Object load(AssetInfo assetInfo) throws IOException {
+        final TextureKey key = (TextureKey) assetInfo.getKey();
+        final String name = key.getName();
+        final TextureKey prebuilt = new TextureKey(name.substring(0, name.lastIndexOf('.')) + ".dds", key.isFlipY());
+        final AssetInfo prebuiltInfo = locator.locate(assetInfo.getManager(), prebuilt);
+        if (prebuiltInfo != null) {
+            return ddsLoader.load(prebuiltInfo);
+        }
+        return fallback.load(assetInfo);
+    }
+}
@@ -31,28 +31,95 @@
  */
 package jme3test.jaimesascent;
 
+import com.jme3.bullet.PhysicsSpace;
+import com.jme3.bullet.PhysicsTickListener;
+import com.jme3.bullet.control.RigidBodyControl;
+import com.jme3.math.FastMath;
+import com.jme3.math.Quaternion;
 import com.jme3.math.Vector3f;
 import com.jme3.renderer.RenderManager;
 import com.jme3.renderer.ViewPort;
+import com.jme3.scene.Spatial;
 import com.jme3.scene.control.AbstractControl;
 
 /**
  *
- * Spins propellers
+ * Spins propellers. The angle advances at the physics rate, from
+ * prePhysicsTick, and the rendered rotation is interpolated between the last
+ * two steps. Must be registered as a tick listener of the physics space.
  *
  * @author rickard
  */
-public class PropellerControl extends AbstractControl {
+public class PropellerControl extends AbstractControl implements PhysicsTickListener {
     
     private final Vector3f axis;
+    private final float speed;
+
+    private RigidBodyControl body;
+    private final Quaternion parentRotation = new Quaternion();
+    private final Quaternion baseRotation = new Quaternion();
+    private boolean ready = false;
+
+    private float previousAngle = 0f;
+    private float currentAngle = 0f;
+    private float stepTime = 1f / 60f;
+    private float sinceStep = 0f;
+
+    private final Quaternion rotation = new Quaternion();
+    private final Quaternion stepRotation = new Quaternion();
     
     public PropellerControl(Vector3f axis) {
-        this.axis = axis;
+        this.speed = axis.length();
+        this.axis = axis.normalize();
+    }
+
+    @Override
+    public void setSpatial(Spatial spatial) {
+        super.setSpatial(spatial);
+        if (spatial != null) {
+            baseRotation.set(spatial.getLocalRotation());
+            body = spatial.getControl(RigidBodyControl.class);
+            // the body is moved from the physics tick, not from the spatial
+            body.setKinematicSpatial(false);
+        }
+    }
+
+    @Override
+    public synchronized void prePhysicsTick(PhysicsSpace space, float timeStep) {
+        if (!ready || !isEnabled()) {
+            return;
+        }
+        previousAngle = currentAngle;
+        currentAngle = (currentAngle + speed * timeStep) % FastMath.TWO_PI;
+        if (currentAngle < previousAngle) {
+            // keep the interpolation going forward over the wrap
+            previousAngle -= FastMath.TWO_PI;
+        }
+        stepTime = timeStep;
+        sinceStep = 0f;
+
+        stepRotation.fromAngleNormalAxis(currentAngle, axis);
+        parentRotation.mult(baseRotation.mult(stepRotation, stepRotation), stepRotation);
+        body.setPhysicsRotation(stepRotation);
+    }
+
+    @Override
+    public void physicsTick(PhysicsSpace space, float timeStep) {
     }
 
     @Override
     protected void controlUpdate(float tpf) {
-        spatial.rotate(axis.x * tpf, axis.y * tpf, axis.z * tpf);
+        float angle;
+        synchronized (this) {
+            if (spatial.getParent() != null) {
+                parentRotation.set(spatial.getParent().getWorldRotation());
+                ready = true;
+            }
+            sinceStep += tpf;
+            angle = FastMath.interpolateLinear(FastMath.clamp(sinceStep / stepTime, 0f, 1f), previousAngle, currentAngle);
+        }
+        rotation.fromAngleNormalAxis(angle, axis);
+        spatial.setLocalRotation(baseRotation.mult(rotation, rotation));
     }
 
     @Override
@@ -34,21 +34,29 @@ package jme3test.jaimesascent;
 import com.jme3.app.Application;
 import com.jme3.app.SimpleApplication;
 import com.jme3.app.state.BaseAppState;
+import com.jme3.app.state.AppStateManager;
 import com.jme3.asset.AssetManager;
+import com.jme3.asset.AssetNotFoundException;
+import com.jme3.asset.TextureKey;
+import com.jme3.bounding.BoundingBox;
 import com.jme3.bullet.BulletAppState;
+import com.jme3.bullet.PhysicsSpace.BroadphaseType;
 import com.jme3.bullet.control.RigidBodyControl;
 import com.jme3.light.DirectionalLight;
 import com.jme3.math.Vector3f;
-import com.jme3.post.FilterPostProcessor;
-import com.jme3.renderer.queue.RenderQueue.ShadowMode;
+import com.jme3.renderer.RenderManager;
 import com.jme3.scene.Geometry;
 import com.jme3.scene.Node;
 import com.jme3.scene.SceneGraphIterator;
 import com.jme3.scene.Spatial;
-import com.jme3.scene.shape.Sphere;
-import com.jme3.shadow.DirectionalLightShadowFilter;
+import com.jme3.system.AppSettings;
 import com.jme3.texture.Texture;
 import com.jme3.util.SkyFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  *
@@ -59,111 +67,210 @@ import com.jme3.util.SkyFactory;
  */
 public class SceneState extends BaseAppState {
 
+    /**
+     * Level machinery further than this from the player pauses, body and
+     * rendered pose together.
+     */
+    private static final float ACTIVITY_RADIUS = 20f;
+
+    /**
+     * Room around the level in the physics world bounds, and the lowest point
+     * they reach, below the kill heights and the parked balls (at -25 with the
+     * default kill height).
+     */
+    private static final float BOUNDS_PADDING = 10f;
+    private static final float LOWEST_POINT = -30f;
+
+    /**
+     * The moving parts of the level, instanced and shadowed as actors.
+     */
+    private static final String[] MOVERS = {"Propeller.1", "Propeller.2", "Propeller.3", "FloatingPlatform.1",
+        "FloatingPlatform.2", "FloatingPlatform.3", "FloatingPlatform.4", "FloatingPlatform.5"};
+
+    private static final Logger LOG = Logger.getLogger(SceneState.class.getName());
+
     private final BulletAppState physicsState;
     private Node rootNode;
 
     private Node scene;
+    private DirectionalLight light;
+    private Spatial sky;
 
     private Spatial statics;
+    private StaticChunks staticChunks;
+    private CellVisibility visibility;
     private Spatial ballShooter;
-    private Spatial propellerOne;
-    private Spatial propellerTwo;
-    private Spatial propellerThree;
-    private Spatial platformOne;
-    private Spatial platformTwo;
-    private Spatial platformThree;
-    private Spatial platformFour;
-    private Spatial platformFive;
+    private KinematicMovers movers;
+    private InstancedProps machinery;
 
-    private Spatial ballGeometry;
+    private BallShooter shooter;
 
     public SceneState(BulletAppState physicsState) {
         this.physicsState = physicsState;
     }
 
-    @Override
-    protected void initialize(Application app) {
-        final AssetManager assetManager = app.getAssetManager();
-        rootNode = ((SimpleApplication) app).getRootNode();
-
+    /**
+     * Loads the level and builds its shapes, batches and sky. Touches nothing
+     * of the application, so Main runs it on a loader thread before attaching
+     * the state; otherwise the state loads itself when attached.
+     *
+     * @param listener told each step, with the progress from 0 to 1
+     */
+    public void load(AssetManager assetManager, AppSettings settings, LoadingListener listener) {
+        final long start = StartupTimeline.start();
+        listener.loading("Loading the level", 0f);
         scene = (Node) assetManager.loadModel("Scenes/labyrinth.j3o");
 
+        listener.loading("Building collision shapes", 0.2f);
         statics = scene.getChild("Statics");
-        statics.addControl(new RigidBodyControl(0));
-        statics.getControl(RigidBodyControl.class).setFriction(0.01f);
+        final float chunkSize = settings.getFloat(Main.STATIC_CHUNK_SIZE);
+        if (chunkSize > 0) {
+            scene.updateGeometricState();
+            staticChunks = new StaticChunks(statics, chunkSize);
+            staticChunks.setFriction(0.01f);
+        } else {
+            statics.addControl(new RigidBodyControl(CollisionShapeCache.createMeshShape(statics, "Scenes/labyrinth.j3o"), 0));
+            statics.getControl(RigidBodyControl.class).setFriction(0.01f);
+        }
                 
         ballShooter = scene.getChild("BallShooter");
+
+        light = new DirectionalLight(new Vector3f(0.5f, -0.5f, 0f));
+
+        // after the collision shapes, the visibility is also built from the unbatched statics
+        final float visibilitySize = settings.getFloat(Main.VISIBILITY_CELL_SIZE);
+        if (visibilitySize > 0) {
+            listener.loading("Building visibility", 0.4f);
+            visibility = new CellVisibility(statics, "Scenes/labyrinth.j3o", visibilitySize, light.getDirection());
+        }
+        final float batchSize = settings.getFloat(Main.STATIC_BATCH_SIZE);
+        if (batchSize > 0) {
+            listener.loading("Batching the level", 0.5f);
+            batchStatics(batchSize);
+        }
+        if (visibility != null) {
+            for (Spatial child : getLevelStatics()) {
+                for (Spatial spatial : new SceneGraphIterator(child)) {
+                    if (spatial instanceof Geometry) {
+                        visibility.add(spatial);
+                    }
+                }
+            }
+        }
         
-        propellerOne = scene.getChild("Propeller.1");
-        propellerOne.addControl(new RigidBodyControl(0));
-        propellerOne.getControl(RigidBodyControl.class).setKinematic(true);
-        propellerOne.addControl(new PropellerControl(Vector3f.UNIT_Z));
-        
-        propellerTwo = scene.getChild("Propeller.2");
-        propellerTwo.addControl(new RigidBodyControl(0));
-        propellerTwo.getControl(RigidBodyControl.class).setKinematic(true);
-        propellerTwo.addControl(new PropellerControl(Vector3f.UNIT_Z));
-        
-        propellerThree = scene.getChild("Propeller.3");
-        propellerThree.addControl(new RigidBodyControl(0));
-        propellerThree.getControl(RigidBodyControl.class).setKinematic(true);
-        propellerThree.addControl(new PropellerControl(Vector3f.UNIT_X));
-
-        platformOne = ((Node) scene.getChild("FloatingPlatform.1")).getChild(0);
-        platformOne.addControl(new RigidBodyControl(0));
-        platformOne.getControl(RigidBodyControl.class).setKinematic(true);
-        platformOne.addControl(new PlatformControl());
-
-        platformTwo = ((Node) scene.getChild("FloatingPlatform.2")).getChild(0);
-        platformTwo.addControl(new RigidBodyControl(0));
-        platformTwo.getControl(RigidBodyControl.class).setKinematic(true);
-        platformTwo.addControl(new PlatformControl());
-
-        platformThree = ((Node) scene.getChild("FloatingPlatform.3")).getChild(0);
-        platformThree.addControl(new RigidBodyControl(0));
-        platformThree.getControl(RigidBodyControl.class).setKinematic(true);
-        platformThree.addControl(new PlatformControl());
-        
-        platformFour = ((Node) scene.getChild("FloatingPlatform.4")).getChild(0);
-        platformFour.addControl(new RigidBodyControl(0));
-        platformFour.getControl(RigidBodyControl.class).setKinematic(true);
-        platformFour.addControl(new PlatformControl());
-        
-        platformFive = ((Node) scene.getChild("FloatingPlatform.5")).getChild(0);
-        platformFive.addControl(new RigidBodyControl(0));
-        platformFive.getControl(RigidBodyControl.class).setKinematic(true);
-        platformFive.addControl(new PlatformControl());
-        
-        DirectionalLight light = new DirectionalLight(new Vector3f(0.5f, -0.5f, 0f));
-        rootNode.addLight(light);
+        listener.loading("Setting up the machinery", 0.6f);
+        movers = new KinematicMovers();
+        movers.addPropeller(scene.getChild("Propeller.1"), Vector3f.UNIT_Z, 1f);
+        movers.addPropeller(scene.getChild("Propeller.2"), Vector3f.UNIT_Z, 1f);
+        movers.addPropeller(scene.getChild("Propeller.3"), Vector3f.UNIT_X, 1f);
+        movers.addPlatform(((Node) scene.getChild("FloatingPlatform.1")).getChild(0), Vector3f.UNIT_Y, 1f, 2f);
+        movers.addPlatform(((Node) scene.getChild("FloatingPlatform.2")).getChild(0), Vector3f.UNIT_Y, 1f, 2f);
+        movers.addPlatform(((Node) scene.getChild("FloatingPlatform.3")).getChild(0), Vector3f.UNIT_Y, 1f, 2f);
+        movers.addPlatform(((Node) scene.getChild("FloatingPlatform.4")).getChild(0), Vector3f.UNIT_Y, 1f, 2f);
+        movers.addPlatform(((Node) scene.getChild("FloatingPlatform.5")).getChild(0), Vector3f.UNIT_Y, 1f, 2f);
+
+        // the scene is at the origin, so the movers keep their place
+        machinery = new InstancedProps("Machinery");
+        for (final String mover : MOVERS) {
+            machinery.attachChild(scene.getChild(mover));
+        }
+        machinery.instance();
+        scene.attachChild(machinery);
+        LOG.log(Level.INFO, "Instanced {0} machinery geometries into {1} draw calls.",
+                new Object[]{machinery.getPropCount(), machinery.getDrawCount()});
+
+        // a level can tune the shooter with user data on the BallShooter node
+        shooter = new BallShooter(getUserData(ballShooter, "MaxBalls", 1).intValue(), 0.9f, 400f,
+                assetManager.loadMaterial("Materials/BallMaterial.j3m"));
+        shooter.setMuzzle(ballShooter.getLocalTranslation());
+        shooter.setFireInterval(getUserData(ballShooter, "FireInterval", 0f).floatValue());
+        shooter.setMaxInFlight(getUserData(ballShooter, "MaxInFlight", Integer.MAX_VALUE).intValue());
+
+        if (settings.getBoolean(Main.MESH_LODS)) {
+            listener.loading("Generating LODs", 0.7f);
+            MeshLods.generate(scene, "Scenes/labyrinth.j3o");
+            MeshLods.generate(shooter.getNode(), null);
+        }
+
+        listener.loading("Loading the sky", 0.9f);
+        sky = loadSky(assetManager);
+        StartupTimeline.record(StartupTimeline.Category.INIT, "SceneState.load", start);
+    }
 
-        FilterPostProcessor processor = new FilterPostProcessor(assetManager);
-        DirectionalLightShadowFilter filter = new DirectionalLightShadowFilter(assetManager, 2048, 1);
-        filter.setLight(light);
-        processor.addFilter(filter);
-        app.getViewPort().addProcessor(processor);
+    /**
+     * Fits the broadphase to the level, loading it first if nobody did. The
+     * physics space is created when the BulletAppState is attached, so this
+     * state must be attached before it.
+     */
+    @Override
+    public void stateAttached(AppStateManager stateManager) {
+        super.stateAttached(stateManager);
+        final Application app = stateManager.getApplication();
+        if (scene == null) {
+            load(app.getAssetManager(), app.getContext().getSettings(), (step, progress) -> { });
+        }
+        if (physicsState.isRunning()) {
+            LOG.log(Level.WARNING, "Physics space already created, broadphase not fitted to the level.");
+            return;
+        }
+
+        BroadphaseType broadphase = BroadphaseType.DBVT;
+        final String name = app.getContext().getSettings().getString(Main.BROADPHASE);
+        if (name != null) {
+            try {
+                broadphase = BroadphaseType.valueOf(name);
+            } catch (IllegalArgumentException exception) {
+                LOG.log(Level.WARNING, "Unknown broadphase {0}, using DBVT.", name);
+            }
+        }
+        physicsState.setBroadphaseType(broadphase);
+
+        scene.updateGeometricState();
+        if (scene.getWorldBound() instanceof BoundingBox bounds) {
+            final Vector3f min = bounds.getMin(null).subtractLocal(BOUNDS_PADDING, BOUNDS_PADDING, BOUNDS_PADDING);
+            min.y = Math.min(min.y, LOWEST_POINT);
+            physicsState.setWorldMin(min);
+            physicsState.setWorldMax(bounds.getMax(null).addLocal(BOUNDS_PADDING, BOUNDS_PADDING, BOUNDS_PADDING));
+        }
+    }
 
-        Sphere sphere = new Sphere(16, 16, 0.9f);
-        ballGeometry = new Geometry("Wrecking ball", sphere);
-        ballGeometry.setMaterial(assetManager.loadMaterial("Materials/BallMaterial.j3m"));
-        ballGeometry.setLocalTranslation(new Vector3f(0, 6, 0));
-        ballGeometry.addControl(new RigidBodyControl(400f));
-        ballGeometry.getControl(RigidBodyControl.class).setRestitution(1);
+    @Override
+    protected void initialize(Application app) {
+        final long start = StartupTimeline.start();
+        rootNode = ((SimpleApplication) app).getRootNode();
+        rootNode.addLight(light);
 
-        SceneGraphIterator it = new SceneGraphIterator(rootNode);
-        it.forEach(spatial -> spatial.setShadowMode(ShadowMode.CastAndReceive));
+        final ShadowState shadows = getState(ShadowState.class);
+        if (shadows != null) {
+            shadows.setLight(light);
+            shadows.addStatic(scene);
+            shadows.addDynamic(machinery);
+            shadows.addDynamic(shooter.getNode());
+        }
 
-        loadSky(assetManager);
+        rootNode.attachChild(sky);
+        StartupTimeline.record(StartupTimeline.Category.STATE, "SceneState.initialize", start);
     }
 
     @Override
     public void update(float tpf) {
         super.update(tpf);
-        if (ballGeometry.getParent() == null) {
-            resetBall();
-        } else if (ballGeometry.getLocalTranslation().y < -10) {
-            rootNode.detachChild(ballGeometry);
-            physicsState.getPhysicsSpace().remove(ballGeometry);
+        final GameState game = getState(GameState.class);
+        if (game != null) {
+            movers.setActivity(game.getPlayerLocation(), ACTIVITY_RADIUS);
+        }
+        movers.update(tpf);
+        shooter.update(tpf);
+    }
+
+    /**
+     * Culls the level from the camera after the chase camera moved it this
+     * frame.
+     */
+    @Override
+    public void render(RenderManager renderManager) {
+        if (visibility != null) {
+            visibility.update(getApplication().getCamera().getLocation());
         }
     }
 
@@ -173,16 +280,16 @@ public class SceneState extends BaseAppState {
 
     @Override
     protected void onEnable() {
-        physicsState.getPhysicsSpace().add(statics);
-        physicsState.getPhysicsSpace().add(propellerOne);
-        physicsState.getPhysicsSpace().add(propellerTwo);
-        physicsState.getPhysicsSpace().add(propellerThree);
-        physicsState.getPhysicsSpace().add(platformOne);
-        physicsState.getPhysicsSpace().add(platformTwo);
-        physicsState.getPhysicsSpace().add(platformThree);
-        physicsState.getPhysicsSpace().add(platformFour);
-        physicsState.getPhysicsSpace().add(platformFive);
+        if (staticChunks != null) {
+            staticChunks.addToSpace(physicsState.getPhysicsSpace());
+        } else {
+            physicsState.getPhysicsSpace().add(statics);
+        }
+        movers.addToSpace(physicsState.getPhysicsSpace());
+        shooter.reset();
+        shooter.addToSpace(physicsState.getPhysicsSpace());
         rootNode.attachChild(scene);
+        rootNode.attachChild(shooter.getNode());
     }
 
     @Override
@@ -191,31 +298,61 @@ public class SceneState extends BaseAppState {
             // no physicsState when exiting app
             return;
         }
-        physicsState.getPhysicsSpace().remove(statics);
-        physicsState.getPhysicsSpace().remove(propellerOne);
-        physicsState.getPhysicsSpace().remove(propellerTwo);
-        physicsState.getPhysicsSpace().remove(propellerThree);
-        physicsState.getPhysicsSpace().remove(platformOne);
-        physicsState.getPhysicsSpace().remove(platformTwo);
-        physicsState.getPhysicsSpace().remove(platformThree);
-        physicsState.getPhysicsSpace().remove(platformFour);
-        physicsState.getPhysicsSpace().remove(platformFive);
+        if (staticChunks != null) {
+            staticChunks.removeFromSpace(physicsState.getPhysicsSpace());
+        } else {
+            physicsState.getPhysicsSpace().remove(statics);
+        }
+        movers.removeFromSpace(physicsState.getPhysicsSpace());
+        shooter.removeFromSpace(physicsState.getPhysicsSpace());
         rootNode.detachChild(scene);
-        rootNode.detachChild(ballGeometry);
-        physicsState.getPhysicsSpace().remove(ballGeometry);
+        rootNode.detachChild(shooter.getNode());
     }
 
-    private void resetBall() {
-        ballGeometry.getControl(RigidBodyControl.class).clearForces();
-        ballGeometry.getControl(RigidBodyControl.class).setLinearVelocity(Vector3f.ZERO.clone());
-        ballGeometry.getControl(RigidBodyControl.class).setAngularVelocity(Vector3f.ZERO.clone());
-        ballGeometry.getControl(RigidBodyControl.class).setPhysicsLocation(ballShooter.getLocalTranslation());
-        ballGeometry.getControl(RigidBodyControl.class).applyCentralImpulse(new Vector3f(0, 0, -1800f));
-        rootNode.attachChild(ballGeometry);
-        physicsState.getPhysicsSpace().add(ballGeometry);
+    /**
+     * Merges everything in the level but the machinery by material and cell.
+     */
+    private void batchStatics(float cellSize) {
+        final StaticBatches batches = new StaticBatches(cellSize);
+        for (Spatial child : getLevelStatics()) {
+            // the shadow modes are part of what keeps geometries apart
+            ShadowState.tagStatics(child);
+            batches.add(child);
+        }
+        scene.attachChild(batches.build());
+        LOG.log(Level.INFO, "Batched {0} static geometries into {1}.",
+                new Object[]{batches.getSourceCount(), batches.getBatchCount()});
     }
 
-    private void loadSky(AssetManager assetManager) {
+    /**
+     * @return the children of the scene that are not machinery
+     */
+    private List<Spatial> getLevelStatics() {
+        final List<String> excluded = new ArrayList<>(Arrays.asList(MOVERS));
+        excluded.add(ballShooter.getName());
+        final List<Spatial> levelStatics = new ArrayList<>();
+        for (Spatial child : scene.getChildren()) {
+            if (!excluded.contains(child.getName())) {
+                levelStatics.add(child);
+            }
+        }
+        return levelStatics;
+    }
+
+    private static Number getUserData(Spatial spatial, String key, Number defaultValue) {
+        final Object value = spatial.getUserData(key);
+        return value instanceof Number number ? number : defaultValue;
+    }
+
+    private static Spatial loadSky(AssetManager assetManager) {
+        // the cube map built by the compileTextures task, when it is there
+        final TextureKey cubeMap = new TextureKey("Textures/Sky/Lagoon/lagoon.dds", false);
+        cubeMap.setTextureTypeHint(Texture.Type.CubeMap);
+        try {
+            return SkyFactory.createSky(assetManager, assetManager.loadTexture(cubeMap), SkyFactory.EnvMapType.CubeMap);
+        } catch (AssetNotFoundException exception) {
+            // not built, e.g. running from the assets folder
+        }
         Texture west = assetManager.loadTexture("Textures/Sky/Lagoon/lagoon_west.jpg");
         Texture east = assetManager.loadTexture("Textures/Sky/Lagoon/lagoon_east.jpg");
         Texture north = assetManager.loadTexture("Textures/Sky/Lagoon/lagoon_north.jpg");
@@ -223,6 +360,6 @@ public class SceneState extends BaseAppState {
         Texture up = assetManager.loadTexture("Textures/Sky/Lagoon/lagoon_up.jpg");
         Texture down = assetManager.loadTexture("Textures/Sky/Lagoon/lagoon_down.jpg");
 
-        rootNode.attachChild(SkyFactory.createSky(assetManager, west, east, north, south, up, down));
+        return SkyFactory.createSky(assetManager, west, east, north, south, up, down);
     }
 }
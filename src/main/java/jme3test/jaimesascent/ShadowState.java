@@ -0,0 +1,245 @@
+/*
+ * Copyright (c) 2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package jme3test.jaimesascent;
+
+import com.jme3.app.Application;
+import com.jme3.app.state.BaseAppState;
+import com.jme3.bounding.BoundingBox;
+import com.jme3.bounding.BoundingVolume;
+import com.jme3.light.DirectionalLight;
+import com.jme3.math.Vector3f;
+import com.jme3.post.FilterPostProcessor;
+import com.jme3.renderer.queue.RenderQueue.Bucket;
+import com.jme3.renderer.queue.RenderQueue.ShadowMode;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.SceneGraphIterator;
+import com.jme3.scene.Spatial;
+import com.jme3.shadow.DirectionalLightShadowFilter;
+import com.jme3.shadow.EdgeFilteringMode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ *
+ * Directional light shadows at a quality tier, and the shadow modes of the
+ * spatials registered with it. Level statics cast and receive, flat statics
+ * (floors) only receive, dynamic actors only cast, and anything smaller than
+ * the tier's smallest caster neither casts nor receives.
+ */
+public class ShadowState extends BaseAppState {
+
+    public static enum Quality {
+        LOW(1, 1024, EdgeFilteringMode.Bilinear, 0.75f),
+        MEDIUM(2, 2048, EdgeFilteringMode.PCF4, 0.5f),
+        HIGH(3, 4096, EdgeFilteringMode.PCF8, 0.25f);
+
+        private final int splits;
+        private final int mapSize;
+        private final EdgeFilteringMode filtering;
+        private final float smallestCaster;
+
+        Quality(int splits, int mapSize, EdgeFilteringMode filtering, float smallestCaster) {
+            this.splits = splits;
+            this.mapSize = mapSize;
+            this.filtering = filtering;
+            this.smallestCaster = smallestCaster;
+        }
+    }
+
+    /**
+     * A static whose height is less than this fraction of its width is a floor.
+     */
+    private static final float FLAT_RATIO = 0.1f;
+
+    /**
+     * Geometry user data, the shadow mode of a level static under each quality
+     * tier, comma separated in tier order. Merged geometries carry the modes of
+     * the pieces they were merged from, their own bounds say nothing about them.
+     */
+    public static final String SHADOW_MODES = "ShadowModes";
+
+    private static final Logger LOG = Logger.getLogger(ShadowState.class.getName());
+
+    private final List<Spatial> statics = new ArrayList<>();
+    private final List<Spatial> dynamics = new ArrayList<>();
+
+    private Quality quality = Quality.MEDIUM;
+    private DirectionalLight light;
+    private FilterPostProcessor processor;
+    private DirectionalLightShadowFilter filter;
+
+    @Override
+    protected void initialize(Application app) {
+        final long start = StartupTimeline.start();
+        final String name = app.getContext().getSettings().getString(Main.SHADOW_QUALITY);
+        if (name != null) {
+            try {
+                quality = Quality.valueOf(name);
+            } catch (IllegalArgumentException exception) {
+                LOG.log(Level.WARNING, "Unknown shadow quality {0}, using {1}.", new Object[]{name, quality});
+            }
+        }
+        processor = new FilterPostProcessor(app.getAssetManager());
+        app.getViewPort().addProcessor(processor);
+        rebuildFilter();
+        StartupTimeline.record(StartupTimeline.Category.STATE, "ShadowState.initialize", start);
+    }
+
+    public Quality getQuality() {
+        return quality;
+    }
+
+    /**
+     * Switches tier, rebuilding the shadow maps and reclassifying the
+     * registered spatials.
+     */
+    public void setQuality(Quality quality) {
+        if (this.quality == quality) {
+            return;
+        }
+        this.quality = quality;
+        if (isInitialized()) {
+            rebuildFilter();
+        }
+        statics.forEach(spatial -> classify(spatial, false));
+        dynamics.forEach(spatial -> classify(spatial, true));
+    }
+
+    public void setLight(DirectionalLight light) {
+        this.light = light;
+        if (filter != null) {
+            filter.setLight(light);
+        }
+    }
+
+    /**
+     * Classifies the geometries under spatial as level statics.
+     */
+    public void addStatic(Spatial spatial) {
+        statics.add(spatial);
+        classify(spatial, false);
+    }
+
+    /**
+     * Classifies the geometries under spatial as moving actors.
+     */
+    public void addDynamic(Spatial spatial) {
+        dynamics.add(spatial);
+        classify(spatial, true);
+    }
+
+    /**
+     * Stores the shadow modes of the geometries under spatial in SHADOW_MODES,
+     * before they are merged into static batches.
+     */
+    public static void tagStatics(Spatial spatial) {
+        spatial.updateGeometricState();
+        SceneGraphIterator it = new SceneGraphIterator(spatial);
+        it.forEach(child -> {
+            if (child instanceof Geometry geometry) {
+                final StringBuilder modes = new StringBuilder();
+                for (Quality quality : Quality.values()) {
+                    if (modes.length() > 0) {
+                        modes.append(',');
+                    }
+                    modes.append(classify(geometry, false, quality));
+                }
+                geometry.setUserData(SHADOW_MODES, modes.toString());
+            }
+        });
+    }
+
+    public void remove(Spatial spatial) {
+        statics.remove(spatial);
+        dynamics.remove(spatial);
+    }
+
+    private void rebuildFilter() {
+        if (filter != null) {
+            processor.removeFilter(filter);
+        }
+        filter = new DirectionalLightShadowFilter(getApplication().getAssetManager(), quality.mapSize, quality.splits);
+        filter.setEdgeFilteringMode(quality.filtering);
+        filter.setEnabled(isEnabled());
+        if (light != null) {
+            filter.setLight(light);
+        }
+        processor.addFilter(filter);
+    }
+
+    private void classify(Spatial spatial, boolean dynamic) {
+        spatial.updateGeometricState();
+        SceneGraphIterator it = new SceneGraphIterator(spatial);
+        it.forEach(child -> {
+            if (child instanceof Geometry geometry) {
+                final String modes = geometry.getUserData(SHADOW_MODES);
+                geometry.setShadowMode(modes != null ? ShadowMode.valueOf(modes.split(",")[quality.ordinal()])
+                        : classify(geometry, dynamic, quality));
+            }
+        });
+    }
+
+    private static ShadowMode classify(Geometry geometry, boolean dynamic, Quality quality) {
+        if (geometry.getQueueBucket() == Bucket.Sky || geometry.getQueueBucket() == Bucket.Gui) {
+            return ShadowMode.Off;
+        }
+        final BoundingVolume bound = geometry.getWorldBound();
+        if (!(bound instanceof BoundingBox box)) {
+            return dynamic ? ShadowMode.Cast : ShadowMode.CastAndReceive;
+        }
+        final Vector3f extent = box.getExtent(null);
+        if (Math.max(extent.x, Math.max(extent.y, extent.z)) < quality.smallestCaster) {
+            return ShadowMode.Off;
+        }
+        if (dynamic) {
+            return ShadowMode.Cast;
+        }
+        return extent.y < FLAT_RATIO * Math.min(extent.x, extent.z) ? ShadowMode.Receive : ShadowMode.CastAndReceive;
+    }
+
+    @Override
+    protected void cleanup(Application app) {
+        app.getViewPort().removeProcessor(processor);
+    }
+
+    @Override
+    protected void onEnable() {
+        filter.setEnabled(true);
+    }
+
+    @Override
+    protected void onDisable() {
+        filter.setEnabled(false);
+    }
+}
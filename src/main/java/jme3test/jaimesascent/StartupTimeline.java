@@ -0,0 +1,193 @@
+/*
+ * Copyright (c) 2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package jme3test.jaimesascent;
+
+import com.jme3.asset.AssetEventListener;
+import com.jme3.asset.AssetKey;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ *
+ * Timestamps the phases of a launch, in milliseconds since the JVM started,
+ * until the first frame showing the level. Can be recorded from any thread.
+ * The report is JSON, one entry per phase:
+ * <pre>
+ * {"category": "ASSET", "name": "Scenes/labyrinth.j3o", "thread": "Level loader",
+ *  "startMs": 1480.2, "durationMs": 312.9}
+ * </pre>
+ * Instants have a duration of 0. Main and HeadlessMain write it at exit
+ * with -Djaimesascent.startupReport=&lt;file&gt;.
+ */
+public final class StartupTimeline {
+
+    public enum Category {
+        JVM, INIT, STATE, ASSET, COLLISION, SHADER, FRAME
+    }
+
+    private record Phase(Category category, String name, String thread, double startMs, double durationMs) {
+    }
+
+    private static final Logger LOG = Logger.getLogger(StartupTimeline.class.getName());
+
+    private static final long BASE_NANOS = System.nanoTime();
+    private static final double BASE_MS = System.currentTimeMillis()
+            - ManagementFactory.getRuntimeMXBean().getStartTime();
+
+    private static final List<Phase> PHASES = new ArrayList<>();
+    private static volatile boolean finished;
+
+    private StartupTimeline() {
+    }
+
+    /**
+     * @return the start of a phase, for record
+     */
+    public static long start() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Records a phase from start until now.
+     */
+    public static void record(Category category, String name, long start) {
+        final long now = System.nanoTime();
+        add(new Phase(category, name, Thread.currentThread().getName(), millis(start), (now - start) / 1e6));
+    }
+
+    /**
+     * Records an instant.
+     */
+    public static void mark(Category category, String name) {
+        add(new Phase(category, name, Thread.currentThread().getName(), millis(System.nanoTime()), 0));
+    }
+
+    /**
+     * Ends the startup, later phases are not recorded.
+     */
+    public static void finish() {
+        finished = true;
+    }
+
+    /**
+     * @return a listener recording every asset loaded until the end of the
+     * startup, to add to the asset manager
+     */
+    public static AssetEventListener assetListener() {
+        final Map<AssetKey<?>, Long> requested = new ConcurrentHashMap<>();
+        return new AssetEventListener() {
+            @Override
+            public void assetRequested(AssetKey key) {
+                if (!finished) {
+                    requested.put(key, System.nanoTime());
+                }
+            }
+
+            @Override
+            public void assetLoaded(AssetKey key) {
+                final Long start = requested.remove(key);
+                if (start != null) {
+                    record(Category.ASSET, key.getName(), start);
+                }
+            }
+
+            @Override
+            public void assetDependencyNotFound(AssetKey parentKey, AssetKey dependentAssetKey) {
+            }
+        };
+    }
+
+    /**
+     * Writes the report when the JVM exits, also through System.exit.
+     */
+    public static void writeAtExit(Path file) {
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> write(file), "Startup timeline"));
+    }
+
+    /**
+     * Writes the phases recorded so far, in the order they started.
+     */
+    public static void write(Path file) {
+        final List<Phase> phases;
+        synchronized (PHASES) {
+            phases = new ArrayList<>(PHASES);
+        }
+        phases.sort((a, b) -> Double.compare(a.startMs(), b.startMs()));
+        try {
+            if (file.getParent() != null) {
+                Files.createDirectories(file.getParent());
+            }
+            try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+                writer.write("{\"phases\": [\n");
+                for (int i = 0; i < phases.size(); i++) {
+                    final Phase phase = phases.get(i);
+                    writer.write(String.format(Locale.ROOT,
+                            "  {\"category\": \"%s\", \"name\": \"%s\", \"thread\": \"%s\", \"startMs\": %.1f, \"durationMs\": %.1f}%s%n",
+                            phase.category(), escape(phase.name()), escape(phase.thread()), phase.startMs(),
+                            phase.durationMs(), i < phases.size() - 1 ? "," : ""));
+                }
+                writer.write("]}\n");
+            }
+            LOG.log(Level.INFO, "Startup timeline written to {0}.", file);
+        } catch (IOException exception) {
+            LOG.log(Level.WARNING, "Unable to write startup timeline {0}.", file);
+        }
+    }
+
+    private static void add(Phase phase) {
+        if (finished) {
+            return;
+        }
+        synchronized (PHASES) {
+            PHASES.add(phase);
+        }
+    }
+
+    private static double millis(long nanos) {
+        return BASE_MS + (nanos - BASE_NANOS) / 1e6;
+    }
+
+    private static String escape(String text) {
+        return text.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+}
@@ -0,0 +1,261 @@
+/*
+ * Copyright (c) 2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package jme3test.jaimesascent;
+
+import com.jme3.bounding.BoundingBox;
+import com.jme3.material.Material;
+import com.jme3.math.Transform;
+import com.jme3.math.Vector3f;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.Node;
+import com.jme3.scene.SceneGraphIterator;
+import com.jme3.scene.Spatial;
+import com.jme3.scene.VertexBuffer;
+import com.jme3.scene.mesh.IndexBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import jme3tools.optimize.GeometryBatchFactory;
+
+/**
+ *
+ * Merges static level geometry into one geometry per material and grid cell,
+ * so the level draws in a few calls while frustum culling still drops the
+ * cells out of view. Geometries only merge with ones of the same vertex format
+ * and the same ShadowState.SHADOW_MODES, which the batch keeps. The grid is horizontal and starts at the corner of the
+ * level. Triangles go to the cell of their centroid and keep their world
+ * position, so collision shapes built from the original node still match
+ * what is drawn.
+ */
+public class StaticBatches {
+
+    private final float cellSize;
+    private final List<Geometry> geometries = new ArrayList<>();
+    private final List<Material> materials = new ArrayList<>();
+    private final Map<Long, List<Geometry>> cells = new LinkedHashMap<>();
+    private final Vector3f origin = new Vector3f();
+    private int sourceCount = 0;
+    private int batchCount = 0;
+
+    public StaticBatches(float cellSize) {
+        this.cellSize = cellSize;
+    }
+
+    /**
+     * Takes the geometries under spatial out of the scene, to be merged by
+     * build. The spatial must not move afterwards.
+     */
+    public void add(Spatial spatial) {
+        spatial.updateGeometricState();
+        final List<Geometry> added = new ArrayList<>();
+        SceneGraphIterator it = new SceneGraphIterator(spatial);
+        it.forEach(child -> {
+            if (child instanceof Geometry geometry) {
+                added.add(geometry);
+            }
+        });
+        for (Geometry geometry : added) {
+            geometry.setMaterial(shared(geometry.getMaterial()));
+            // keeps the world transform it had in the scene
+            geometry.setLocalTransform(geometry.getWorldTransform());
+            geometry.removeFromParent();
+            geometry.updateGeometricState();
+            geometries.add(geometry);
+        }
+    }
+
+    /**
+     * @return a node holding one node per cell, each with a geometry per
+     * material. Meant to be attached where the world transform is identity.
+     */
+    public Node build() {
+        origin.set(Float.POSITIVE_INFINITY, 0, Float.POSITIVE_INFINITY);
+        final Vector3f min = new Vector3f();
+        for (Geometry geometry : geometries) {
+            if (geometry.getWorldBound() instanceof BoundingBox bounds) {
+                bounds.getMin(min);
+                origin.set(Math.min(origin.x, min.x), 0, Math.min(origin.z, min.z));
+            }
+        }
+        for (Geometry geometry : geometries) {
+            split(geometry);
+        }
+        sourceCount += geometries.size();
+        geometries.clear();
+
+        final Node node = new Node("StaticBatches");
+        int index = 0;
+        for (List<Geometry> geometries : cells.values()) {
+            final Node cell = new Node("StaticBatches." + index++);
+            final Map<String, List<Geometry>> groups = new LinkedHashMap<>();
+            for (Geometry geometry : geometries) {
+                groups.computeIfAbsent(group(geometry), k -> new ArrayList<>()).add(geometry);
+            }
+            for (List<Geometry> group : groups.values()) {
+                final String shadowModes = group.get(0).getUserData(ShadowState.SHADOW_MODES);
+                for (Geometry batch : GeometryBatchFactory.makeBatches(group)) {
+                    batch.setUserData(ShadowState.SHADOW_MODES, shadowModes);
+                    cell.attachChild(batch);
+                    batchCount++;
+                }
+            }
+            node.attachChild(cell);
+        }
+        cells.clear();
+        return node;
+    }
+
+    /**
+     * @return geometries added
+     */
+    public int getSourceCount() {
+        return sourceCount;
+    }
+
+    /**
+     * @return geometries built, the draw calls of the static level
+     */
+    public int getBatchCount() {
+        return batchCount;
+    }
+
+    /**
+     * GeometryBatchFactory groups by material instance, while loaded models
+     * give every geometry its own copy.
+     */
+    private Material shared(Material material) {
+        for (Material other : materials) {
+            if (other.contentEquals(material)) {
+                return other;
+            }
+        }
+        materials.add(material);
+        return material;
+    }
+
+    /**
+     * mergeGeometries throws on meshes whose buffers differ in format, e.g.
+     * float and quantized texture coordinates.
+     */
+    private static String group(Geometry geometry) {
+        final StringBuilder key = new StringBuilder();
+        key.append((String) geometry.getUserData(ShadowState.SHADOW_MODES));
+        for (VertexBuffer.Type type : VertexBuffer.Type.values()) {
+            final VertexBuffer buffer = geometry.getMesh().getBuffer(type);
+            if (buffer != null && type != VertexBuffer.Type.Index) {
+                key.append(' ').append(type).append(buffer.getNumComponents())
+                        .append(buffer.getFormat()).append(buffer.isNormalized() ? "n" : "");
+            }
+        }
+        return key.toString();
+    }
+
+    private void split(Geometry geometry) {
+        final Mesh mesh = geometry.getMesh();
+        final Transform transform = geometry.getWorldTransform();
+        if (mesh.getMode() != Mesh.Mode.Triangles) {
+            cells.computeIfAbsent(cell(geometry.getWorldBound().getCenter()), k -> new ArrayList<>()).add(geometry);
+            return;
+        }
+
+        final Map<Long, List<Integer>> triangles = new LinkedHashMap<>();
+        final Vector3f[] corners = {new Vector3f(), new Vector3f(), new Vector3f()};
+        final Vector3f centroid = new Vector3f();
+        for (int i = 0; i < mesh.getTriangleCount(); i++) {
+            mesh.getTriangle(i, corners[0], corners[1], corners[2]);
+            centroid.set(corners[0]).addLocal(corners[1]).addLocal(corners[2]).divideLocal(3f);
+            transform.transformVector(centroid, centroid);
+            triangles.computeIfAbsent(cell(centroid), k -> new ArrayList<>()).add(i);
+        }
+        if (triangles.size() == 1) {
+            cells.computeIfAbsent(triangles.keySet().iterator().next(), k -> new ArrayList<>()).add(geometry);
+            return;
+        }
+        for (Map.Entry<Long, List<Integer>> entry : triangles.entrySet()) {
+            final Geometry part = new Geometry(geometry.getName(), subMesh(mesh, entry.getValue()));
+            part.setMaterial(geometry.getMaterial());
+            part.setUserData(ShadowState.SHADOW_MODES, geometry.getUserData(ShadowState.SHADOW_MODES));
+            part.setLocalTransform(transform);
+            part.updateGeometricState();
+            cells.computeIfAbsent(entry.getKey(), k -> new ArrayList<>()).add(part);
+        }
+    }
+
+    private long cell(Vector3f point) {
+        final long x = (long) Math.floor((point.x - origin.x) / cellSize);
+        final long z = (long) Math.floor((point.z - origin.z) / cellSize);
+        return (x << 32) | (z & 0xFFFFFFFFL);
+    }
+
+    private static Mesh subMesh(Mesh mesh, List<Integer> triangles) {
+        final IndexBuffer indices = mesh.getIndicesAsList();
+        final int[] remap = new int[mesh.getVertexCount()];
+        final List<Integer> used = new ArrayList<>();
+        for (int triangle : triangles) {
+            for (int corner = 0; corner < 3; corner++) {
+                final int vertex = indices.get(triangle * 3 + corner);
+                if (remap[vertex] == 0) {
+                    used.add(vertex);
+                    remap[vertex] = used.size();
+                }
+            }
+        }
+
+        final Mesh part = new Mesh();
+        for (VertexBuffer source : mesh.getBufferList()) {
+            if (source.getBufferType() == VertexBuffer.Type.Index) {
+                continue;
+            }
+            final VertexBuffer target = new VertexBuffer(source.getBufferType());
+            target.setupData(source.getUsage(), source.getNumComponents(), source.getFormat(),
+                    VertexBuffer.createBuffer(source.getFormat(), source.getNumComponents(), used.size()));
+            target.setNormalized(source.isNormalized());
+            for (int i = 0; i < used.size(); i++) {
+                source.copyElement(used.get(i), target, i);
+            }
+            part.setBuffer(target);
+        }
+        final IndexBuffer partIndices = IndexBuffer.createIndexBuffer(used.size(), triangles.size() * 3);
+        int position = 0;
+        for (int triangle : triangles) {
+            for (int corner = 0; corner < 3; corner++) {
+                partIndices.put(position++, remap[indices.get(triangle * 3 + corner)] - 1);
+            }
+        }
+        part.setBuffer(VertexBuffer.Type.Index, 3, partIndices.getFormat(), partIndices.getBuffer());
+        part.updateCounts();
+        part.updateBound();
+        return part;
+    }
+}
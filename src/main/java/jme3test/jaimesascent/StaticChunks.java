@@ -0,0 +1,309 @@
+/*
+ * Copyright (c) 2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package jme3test.jaimesascent;
+
+import com.jme3.bullet.PhysicsSpace;
+import com.jme3.bullet.collision.shapes.BoxCollisionShape;
+import com.jme3.bullet.collision.shapes.CollisionShape;
+import com.jme3.bullet.collision.shapes.CompoundCollisionShape;
+import com.jme3.bullet.collision.shapes.HullCollisionShape;
+import com.jme3.bullet.collision.shapes.MeshCollisionShape;
+import com.jme3.bullet.collision.shapes.infos.IndexedMesh;
+import com.jme3.bullet.objects.PhysicsRigidBody;
+import com.jme3.math.Vector3f;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.SceneGraphIterator;
+import com.jme3.scene.Spatial;
+import com.jme3.scene.VertexBuffer;
+import com.jme3.scene.mesh.IndexBuffer;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ *
+ * Splits the static level geometry into one rigid body per grid cell, so the
+ * broadphase only hands the narrowphase the few cells a body actually
+ * touches. Connected pieces that are closed and convex are replaced by the
+ * box or hull they exactly describe; the remaining triangles are kept as one
+ * mesh per cell.
+ */
+public class StaticChunks {
+
+    /**
+     * Vertices closer than this are welded and points this close to a plane
+     * count as on it.
+     */
+    private static final float EPSILON = 1e-3f;
+
+    private final List<PhysicsRigidBody> bodies = new ArrayList<>();
+    private int boxes = 0;
+    private int hulls = 0;
+    private int meshTriangles = 0;
+
+    /**
+     * Builds the chunks in world space. The spatial must not move afterwards.
+     *
+     * @param spatial the static geometry
+     * @param cellSize the size of a chunk
+     */
+    public StaticChunks(Spatial spatial, float cellSize) {
+        final long start = StartupTimeline.start();
+        // welded world space vertices and the triangles using them
+        final Map<Vector3f, Integer> welded = new HashMap<>();
+        final List<Vector3f> vertices = new ArrayList<>();
+        final List<int[]> triangles = new ArrayList<>();
+        final Vector3f world = new Vector3f();
+        for (Spatial child : new SceneGraphIterator(spatial)) {
+            if (!(child instanceof Geometry geometry) || geometry.getMesh().getMode() != Mesh.Mode.Triangles) {
+                continue;
+            }
+            final FloatBuffer positions = geometry.getMesh().getFloatBuffer(VertexBuffer.Type.Position);
+            final IndexBuffer indices = geometry.getMesh().getIndexBuffer();
+            final int[] ids = new int[geometry.getMesh().getVertexCount()];
+            for (int i = 0; i < ids.length; i++) {
+                world.set(positions.get(i * 3), positions.get(i * 3 + 1), positions.get(i * 3 + 2));
+                geometry.localToWorld(world, world);
+                final Vector3f key = new Vector3f(Math.round(world.x / EPSILON) * EPSILON,
+                        Math.round(world.y / EPSILON) * EPSILON, Math.round(world.z / EPSILON) * EPSILON);
+                ids[i] = welded.computeIfAbsent(key, k -> {
+                    vertices.add(k);
+                    return vertices.size() - 1;
+                });
+            }
+            final int count = geometry.getMesh().getTriangleCount();
+            for (int i = 0; i < count; i++) {
+                final int[] triangle = {ids[indices.get(i * 3)], ids[indices.get(i * 3 + 1)], ids[indices.get(i * 3 + 2)]};
+                if (triangle[0] != triangle[1] && triangle[1] != triangle[2] && triangle[2] != triangle[0]) {
+                    triangles.add(triangle);
+                }
+            }
+        }
+
+        // closed convex pieces become a box or hull in the cell of their
+        // center, everything else is binned triangle by triangle
+        final Map<Long, CompoundCollisionShape> shapes = new HashMap<>();
+        final Map<Long, List<int[]>> meshes = new HashMap<>();
+        final Vector3f center = new Vector3f();
+        for (List<int[]> piece : split(triangles, vertices.size())) {
+            final CollisionShape convex = createConvex(piece, vertices, center);
+            if (convex != null) {
+                shapes.computeIfAbsent(cell(center, cellSize), k -> new CompoundCollisionShape())
+                        .addChildShape(convex, center);
+                continue;
+            }
+            for (int[] triangle : piece) {
+                center.set(vertices.get(triangle[0])).addLocal(vertices.get(triangle[1]))
+                        .addLocal(vertices.get(triangle[2])).divideLocal(3f);
+                meshes.computeIfAbsent(cell(center, cellSize), k -> new ArrayList<>()).add(triangle);
+            }
+        }
+        final List<CollisionShape> cellShapes = new ArrayList<>(shapes.values());
+        for (Map.Entry<Long, List<int[]>> mesh : meshes.entrySet()) {
+            final MeshCollisionShape shape = createMesh(mesh.getValue(), vertices);
+            meshTriangles += mesh.getValue().size();
+            final CompoundCollisionShape compound = shapes.get(mesh.getKey());
+            if (compound == null) {
+                // a lone mesh needs no compound around it
+                cellShapes.add(shape);
+            } else {
+                compound.addChildShape(shape);
+            }
+        }
+
+        for (CollisionShape shape : cellShapes) {
+            final PhysicsRigidBody body = new PhysicsRigidBody(shape, PhysicsRigidBody.massForStatic);
+            body.setUserObject(spatial);
+            bodies.add(body);
+        }
+        StartupTimeline.record(StartupTimeline.Category.COLLISION, "StaticChunks " + spatial.getName(), start);
+    }
+
+    public List<PhysicsRigidBody> getBodies() {
+        return bodies;
+    }
+
+    public int getBoxCount() {
+        return boxes;
+    }
+
+    public int getHullCount() {
+        return hulls;
+    }
+
+    public int getMeshTriangleCount() {
+        return meshTriangles;
+    }
+
+    public void setFriction(float friction) {
+        for (PhysicsRigidBody body : bodies) {
+            body.setFriction(friction);
+        }
+    }
+
+    public void addToSpace(PhysicsSpace space) {
+        for (PhysicsRigidBody body : bodies) {
+            space.addCollisionObject(body);
+        }
+    }
+
+    public void removeFromSpace(PhysicsSpace space) {
+        for (PhysicsRigidBody body : bodies) {
+            space.removeCollisionObject(body);
+        }
+    }
+
+    /**
+     * Splits the triangles into pieces connected by shared vertices.
+     */
+    private static List<List<int[]>> split(List<int[]> triangles, int vertexCount) {
+        final int[] root = new int[vertexCount];
+        for (int[] triangle : triangles) {
+            for (int vertex : triangle) {
+                root[vertex] = vertex;
+            }
+        }
+        for (int[] triangle : triangles) {
+            final int a = find(root, triangle[0]);
+            root[find(root, triangle[1])] = a;
+            root[find(root, triangle[2])] = a;
+        }
+        final Map<Integer, List<int[]>> pieces = new HashMap<>();
+        for (int[] triangle : triangles) {
+            pieces.computeIfAbsent(find(root, triangle[0]), k -> new ArrayList<>()).add(triangle);
+        }
+        return new ArrayList<>(pieces.values());
+    }
+
+    private static long cell(Vector3f point, float cellSize) {
+        final long x = (long) Math.floor(point.x / cellSize);
+        final long y = (long) Math.floor(point.y / cellSize);
+        final long z = (long) Math.floor(point.z / cellSize);
+        return ((x & 0x1FFFFF) << 42) | ((y & 0x1FFFFF) << 21) | (z & 0x1FFFFF);
+    }
+
+    private static int find(int[] root, int vertex) {
+        while (root[vertex] != vertex) {
+            root[vertex] = root[root[vertex]];
+            vertex = root[vertex];
+        }
+        return vertex;
+    }
+
+    /**
+     * Creates a box or hull for the piece if it is closed, every edge shared
+     * by exactly two triangles, and convex, none of its vertices in front of
+     * any of its triangles. Such a shape matches the piece exactly.
+     *
+     * @param center storage for the center of the shape
+     * @return the shape, or null to keep the piece as triangles
+     */
+    private CollisionShape createConvex(List<int[]> piece, List<Vector3f> vertices, Vector3f center) {
+        final Map<Long, Integer> edges = new HashMap<>();
+        for (int[] triangle : piece) {
+            for (int i = 0; i < 3; i++) {
+                final long from = triangle[i];
+                final long to = triangle[(i + 1) % 3];
+                edges.merge(Math.min(from, to) << 32 | Math.max(from, to), 1, Integer::sum);
+            }
+        }
+        for (int count : edges.values()) {
+            if (count != 2) {
+                return null;
+            }
+        }
+
+        final int[] used = piece.stream().flatMapToInt(Arrays::stream).distinct().toArray();
+        final Vector3f min = new Vector3f(Float.MAX_VALUE, Float.MAX_VALUE, Float.MAX_VALUE);
+        final Vector3f max = new Vector3f(-Float.MAX_VALUE, -Float.MAX_VALUE, -Float.MAX_VALUE);
+        for (int vertex : used) {
+            min.minLocal(vertices.get(vertex));
+            max.maxLocal(vertices.get(vertex));
+        }
+
+        boolean axisAligned = true;
+        final Vector3f edge1 = new Vector3f();
+        final Vector3f edge2 = new Vector3f();
+        final Vector3f normal = new Vector3f();
+        for (int[] triangle : piece) {
+            final Vector3f a = vertices.get(triangle[0]);
+            vertices.get(triangle[1]).subtract(a, edge1);
+            vertices.get(triangle[2]).subtract(a, edge2);
+            edge1.cross(edge2, normal);
+            if (normal.lengthSquared() < EPSILON * EPSILON) {
+                continue;
+            }
+            normal.normalizeLocal();
+            for (int vertex : used) {
+                if (normal.dot(vertices.get(vertex)) - normal.dot(a) > EPSILON) {
+                    return null;
+                }
+            }
+            axisAligned &= Math.abs(normal.x) > 1 - EPSILON || Math.abs(normal.y) > 1 - EPSILON
+                    || Math.abs(normal.z) > 1 - EPSILON;
+        }
+
+        center.set(min).addLocal(max).multLocal(0.5f);
+        final Vector3f halfExtents = max.subtract(min).multLocal(0.5f);
+        final float margin = CollisionShape.getDefaultMargin();
+        if (axisAligned && halfExtents.x > margin && halfExtents.y > margin && halfExtents.z > margin) {
+            boxes++;
+            return new BoxCollisionShape(halfExtents);
+        }
+        final float[] points = new float[used.length * 3];
+        for (int i = 0; i < used.length; i++) {
+            final Vector3f vertex = vertices.get(used[i]);
+            points[i * 3] = vertex.x - center.x;
+            points[i * 3 + 1] = vertex.y - center.y;
+            points[i * 3 + 2] = vertex.z - center.z;
+        }
+        hulls++;
+        return new HullCollisionShape(points);
+    }
+
+    private static MeshCollisionShape createMesh(List<int[]> triangles, List<Vector3f> vertices) {
+        final Map<Integer, Integer> remap = new HashMap<>();
+        final List<Vector3f> positions = new ArrayList<>();
+        final int[] indices = new int[triangles.size() * 3];
+        for (int i = 0; i < indices.length; i++) {
+            indices[i] = remap.computeIfAbsent(triangles.get(i / 3)[i % 3], vertex -> {
+                positions.add(vertices.get(vertex));
+                return positions.size() - 1;
+            });
+        }
+        return new MeshCollisionShape(true, new IndexedMesh(positions.toArray(new Vector3f[0]), indices));
+    }
+}
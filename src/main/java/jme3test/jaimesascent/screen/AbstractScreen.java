@@ -32,30 +32,47 @@
 package jme3test.jaimesascent.screen;
 
 import com.jme3.app.Application;
+import com.jme3.app.SimpleApplication;
 import com.jme3.app.state.BaseAppState;
 import com.jme3.asset.AssetManager;
 import com.jme3.cursors.plugins.JmeCursor;
 import com.jme3.math.Vector3f;
+import com.jme3.post.SceneProcessor;
+import com.jme3.profile.AppProfiler;
+import com.jme3.renderer.RenderManager;
+import com.jme3.renderer.ViewPort;
+import com.jme3.renderer.queue.RenderQueue;
 import com.jme3.system.AppSettings;
+import com.jme3.texture.FrameBuffer;
 import com.jme3.texture.Image;
 import com.jme3.texture.Texture;
 import com.jme3.util.BufferUtils;
 import com.simsilica.lemur.Container;
 import java.nio.ByteBuffer;
 import java.nio.IntBuffer;
-import jme3test.jaimesascent.Main;
+import jme3test.jaimesascent.StartupTimeline;
 import jme3test.jaimesascent.ui.MyLayout;
 
 /**
+ * Base of the GUI screens. The screen follows the size of the window: a
+ * resize updates the root pane and lays the screen out again, once per frame
+ * at most however many resize events came in.
+ *
  * @author wil
  */
 public abstract class AbstractScreen extends BaseAppState {
 
     protected Container rootContainer;
 
+    private final ResizeListener resizeListener = new ResizeListener();
+    private int resizedWidth;
+    private int resizedHeight;
+    private boolean resized;
+
     @Override
     protected void initialize(Application app) {
-        AppSettings settings = ((Main) app).getSettings();
+        final long start = StartupTimeline.start();
+        AppSettings settings = app.getContext().getSettings();
         MyLayout layout = new MyLayout(MyLayout.onCreateRootPane(new Vector3f(settings.getWidth(), settings.getHeight(), 1), new Vector3f(1024, 576, 1)));
 
         rootContainer = new Container();
@@ -63,7 +80,9 @@ public abstract class AbstractScreen extends BaseAppState {
         rootContainer.setLayout(layout);
 
         init();        
+        app.getGuiViewPort().addProcessor(resizeListener);
         setEnabled(false);
+        StartupTimeline.record(StartupTimeline.Category.STATE, getClass().getSimpleName() + ".initialize", start);
     }
     
     public JmeCursor createJmeCursorFromClassPath(String path, AssetManager assetManager) {
@@ -92,15 +111,95 @@ public abstract class AbstractScreen extends BaseAppState {
     protected abstract void init();
 
     @Override
-    protected void cleanup(Application application) { }
+    protected void cleanup(Application application) {
+        application.getGuiViewPort().removeProcessor(resizeListener);
+    }
+
+    @Override
+    public void update(float tpf) {
+        applyResize();
+    }
 
     @Override
     protected void onEnable() {
-        Main app = (Main) getApplication();
-        AppSettings settings = app.getSettings();
-        
+        SimpleApplication app = (SimpleApplication) getApplication();
+        applyResize();
+
         app.getGuiNode().attachChild(rootContainer);
-        rootContainer.setLocalTranslation(0, settings.getHeight(), 0);
+        rootContainer.setLocalTranslation(0, getRootPane().getWindow().y, 0);
+    }
+
+    protected MyLayout.RootPane getRootPane() {
+        return ((MyLayout) rootContainer.getLayout()).getRootPane();
+    }
+
+    /**
+     * Takes the last window size reported. The root container gets it as its
+     * preferred size, which invalidates the layout; the MyLayouts then see the
+     * new scale factor and lay their children and fonts out again.
+     */
+    private void applyResize() {
+        if (!resized) {
+            return;
+        }
+        resized = false;
+        final Vector3f window = getRootPane().getWindow();
+        if (window.x == resizedWidth && window.y == resizedHeight) {
+            return;
+        }
+        window.set(resizedWidth, resizedHeight, window.z);
+        rootContainer.setPreferredSize(window.clone());
+        rootContainer.setLocalTranslation(0, resizedHeight, 0);
+    }
+
+    /**
+     * Told of every resize of the GUI viewport, on the render thread between
+     * two updates. Only remembers the size.
+     */
+    private class ResizeListener implements SceneProcessor {
+
+        private boolean initialized;
+
+        @Override
+        public void initialize(RenderManager rm, ViewPort vp) {
+            initialized = true;
+        }
+
+        @Override
+        public void reshape(ViewPort vp, int w, int h) {
+            // a minimized window reports an empty framebuffer
+            if (w > 0 && h > 0) {
+                resizedWidth = w;
+                resizedHeight = h;
+                resized = true;
+            }
+        }
+
+        @Override
+        public boolean isInitialized() {
+            return initialized;
+        }
+
+        @Override
+        public void preFrame(float tpf) {
+        }
+
+        @Override
+        public void postQueue(RenderQueue rq) {
+        }
+
+        @Override
+        public void postFrame(FrameBuffer out) {
+        }
+
+        @Override
+        public void cleanup() {
+            initialized = false;
+        }
+
+        @Override
+        public void setProfiler(AppProfiler profiler) {
+        }
     }
 
     @Override
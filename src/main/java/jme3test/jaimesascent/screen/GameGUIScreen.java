@@ -35,7 +35,7 @@ import com.jme3.math.Vector3f;
 import com.simsilica.lemur.Button;
 import jme3test.jaimesascent.ui.MyLayout;
 import jme3test.jaimesascent.ui.PauseMenu;
-import jme3test.jaimesascent.ui.UIImage;
+import jme3test.jaimesascent.ui.UISprite;
 import jme3test.jaimesascent.ui.Window;
 
 /**
@@ -56,7 +56,7 @@ public class GameGUIScreen extends AbstractScreen {
                         .setMouseCursor(createJmeCursorFromClassPath("Interface/UI/cursor_g.png", getApplication().getAssetManager()));
         
         Button menu = new Button("");
-        menu.setBackground(new UIImage("Interface/UI/button_03.png"));
+        menu.setBackground(new UISprite("button_03"));
         menu.setPreferredSize(new Vector3f(50, 50, 0));
         menu.addClickCommands((source) -> {
             window.setVisible(true);
@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package jme3test.jaimesascent.screen;
+
+import com.jme3.app.Application;
+import com.jme3.math.ColorRGBA;
+import com.jme3.math.Vector3f;
+import com.simsilica.lemur.GuiGlobals;
+import com.simsilica.lemur.HAlignment;
+import com.simsilica.lemur.Label;
+import com.simsilica.lemur.Panel;
+import com.simsilica.lemur.VAlignment;
+import jme3test.jaimesascent.ui.MyLayout;
+import jme3test.jaimesascent.ui.UISprite;
+
+/**
+ * Shown while the level loads in the background, with the current step and
+ * a progress bar.
+ */
+public class LoadingScreen extends AbstractScreen {
+
+    private static final float BAR_WIDTH  = 400;
+    private static final float BAR_HEIGHT = 12;
+
+    private Label step;
+    private Panel fill;
+
+    // written by the loader thread, shown on the next update
+    private volatile String loadingStep = "";
+    private volatile float loadingProgress;
+    private float shownProgress = -1;
+
+    @Override
+    protected void initialize(Application app) {
+        super.initialize(app);
+        // up from the start, it covers the level until it is attached
+        setEnabled(true);
+    }
+
+    @Override
+    protected void init() {
+        MyLayout layout = (MyLayout) rootContainer.getLayout();
+        rootContainer.setBackground(new UISprite("fill", new ColorRGBA(0.05f, 0.05f, 0.07f, 1.0f)));
+
+        Label title = new Label("Jaimes Ascent");
+        title.setPreferredSize(new Vector3f(BAR_WIDTH, 50, 0));
+        title.setFont(GuiGlobals.getInstance().loadFont("/Interface/Fonts/OrbitronBlack.fnt"));
+        title.setColor(ColorRGBA.White.clone());
+        title.setTextHAlignment(HAlignment.Center);
+        title.setTextVAlignment(VAlignment.Center);
+
+        rootContainer.addChild(title, MyLayout.Alignment.Center, false);
+        layout.setAttribute(MyLayout.POSITION, title, new Vector3f(0, 60, 1));
+        layout.setAttribute(MyLayout.FONT_SIZE, title, 35.0f);
+
+        step = new Label("");
+        step.setPreferredSize(new Vector3f(BAR_WIDTH, 30, 0));
+        step.setFont(GuiGlobals.getInstance().loadFont("/Interface/Fonts/OrbitronSemiBold.fnt"));
+        step.setColor(new ColorRGBA(0.522f, 0.537f, 0.584f, 1.0f));
+        step.setTextHAlignment(HAlignment.Center);
+        step.setTextVAlignment(VAlignment.Center);
+
+        rootContainer.addChild(step, MyLayout.Alignment.Center, false);
+        layout.setAttribute(MyLayout.POSITION, step, new Vector3f(0, 10, 1));
+        layout.setAttribute(MyLayout.FONT_SIZE, step, 18.0f);
+
+        Panel track = new Panel();
+        track.setBackground(new UISprite("fill", new ColorRGBA(0.2f, 0.2f, 0.24f, 1.0f)));
+        track.setPreferredSize(new Vector3f(BAR_WIDTH, BAR_HEIGHT, 0));
+        rootContainer.addChild(track, MyLayout.Alignment.Center, false);
+        layout.setAttribute(MyLayout.POSITION, track, new Vector3f(0, -30, 1));
+
+        // grows from the left edge of the track
+        fill = new Panel();
+        fill.setBackground(new UISprite("fill", new ColorRGBA(0.412f, 0.424f, 0.463f, 1.0f)));
+        fill.setPreferredSize(new Vector3f(0, BAR_HEIGHT, 0));
+        rootContainer.addChild(fill, MyLayout.Alignment.Center, false);
+        layout.setAttribute(MyLayout.POSITION, fill, new Vector3f(-BAR_WIDTH * 0.5f, -30, 2));
+    }
+
+    /**
+     * Can be called from any thread.
+     *
+     * @param step what is being loaded now
+     * @param progress done so far, from 0 to 1
+     */
+    public void setProgress(String step, float progress) {
+        loadingStep = step;
+        loadingProgress = progress;
+    }
+
+    @Override
+    public void update(float tpf) {
+        super.update(tpf);
+        final float progress = loadingProgress;
+        if (progress == shownProgress) {
+            return;
+        }
+        shownProgress = progress;
+        step.setText(loadingStep);
+
+        MyLayout layout = (MyLayout) rootContainer.getLayout();
+        fill.setPreferredSize(new Vector3f(BAR_WIDTH * progress, BAR_HEIGHT, 0));
+        layout.setAttribute(MyLayout.POSITION, fill, new Vector3f((BAR_WIDTH * progress - BAR_WIDTH) * 0.5f, -30, 2));
+    }
+}
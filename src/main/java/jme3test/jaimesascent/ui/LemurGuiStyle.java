@@ -58,6 +58,7 @@ public final class LemurGuiStyle {
         GuiGlobals.getInstance()
                   .getStyles()
                   .setDefaultStyle(MY_STYLE);
+        UIAtlas.initialize(app.getAssetManager());
         
         Styles styles = GuiGlobals.getInstance()
                                   .getStyles();
@@ -124,6 +124,12 @@ public class MyLayout extends AbstractGuiComponent implements GuiLayout {
         
         private final Attributes attributes;
         private final GuiControl gc;
+        private final Vector3f preferredSize = new Vector3f();
+        private final Vector3f mySize = new Vector3f();
+        private final Vector3f myPosition = new Vector3f();
+        
+        /** Set when an attribute changed since the last layout pass. */
+        private boolean dirty = true;
         
         public Control(GuiControl gc, Object... constraints) {
             this.attributes = new Attributes(constraints);
@@ -131,21 +137,35 @@ public class MyLayout extends AbstractGuiComponent implements GuiLayout {
         }
         
         void setFontSize() {
-            if ((gc.getNode()) instanceof Label) {
-                ((Label) gc.getNode()).setFontSize(attributes.fontsize * rootPane.getScaleFactor().y);
+            if ((gc.getNode()) instanceof Label label) {
+                final float fontSize = attributes.fontsize * rootPane.getScaleFactor().y;
+                // a new size invalidates the label, even when it is the same
+                if (label.getFontSize() != fontSize) {
+                    label.setFontSize(fontSize);
+                }
             } else {
                 LOG.log(Level.WARNING, "GuiControl({0}) :It is not a label control.", gc.getClass());
             }
         }
         
+        /**
+         * @return true when the preferred size changed since the last call
+         */
+        boolean updatePreferredSize() {
+            final Vector3f prefSize = gc.getPreferredSize();
+            if (prefSize.equals(preferredSize)) {
+                return false;
+            }
+            preferredSize.set(prefSize);
+            return true;
+        }
+        
         void resize() {
-            Vector3f mySize = new Vector3f();
-            Vector3f prefSize = gc.getPreferredSize();
-            
-            final Vector3f fac = rootPane.getScaleFactor();
-            mySize.x = attributes.lockscaling ? prefSize.x * fac.y : prefSize.x * fac.x;
-            mySize.y = prefSize.y * fac.y;
-            mySize.z = prefSize.z * fac.z;
+            dirty = false;
+            final Vector3f fac = scaleFactor;
+            mySize.x = attributes.lockscaling ? preferredSize.x * fac.y : preferredSize.x * fac.x;
+            mySize.y = preferredSize.y * fac.y;
+            mySize.z = preferredSize.z * fac.z;
             
             gc.setSize(mySize);
 
@@ -155,15 +175,15 @@ public class MyLayout extends AbstractGuiComponent implements GuiLayout {
             nodeControl.setLocalTranslation(parentSize.x / 2.0F, -parentSize.y / 2.0F, parentSize.z / 2.0F);
             nodeControl.move(-mySize.x * 0.5F, mySize.y * 0.5F, -mySize.z * 0.5F);
             
-            nodeControl.move(calculatePosition());
+            nodeControl.move(calculatePosition(myPosition));
         }
         
-        Vector3f calculatePosition() {
+        Vector3f calculatePosition(Vector3f store) {
             float width  = gc.getSize().x,
                   height = gc.getSize().y;
 
             final Vector3f myPos = attributes.originalPos;
-            final Vector3f fac = rootPane.getScaleFactor();
+            final Vector3f fac = scaleFactor;
             
             float offsetX = myPos.getX();
             float offsetY = myPos.getY();
@@ -171,115 +191,119 @@ public class MyLayout extends AbstractGuiComponent implements GuiLayout {
             float xPos, yPos, zPos = myPos.z * fac.z;
             switch (attributes.alignment) {
                 case Center -> {
-                    if ( hasParentAndLockscaling() ) {
+                    if ( parentLockscaling ) {
                         xPos = (offsetX * fac.y);
                         yPos = (offsetY * fac.y);
                     } else {
                         xPos = (offsetX * fac.x);
                         yPos = (offsetY * fac.y);
                     }
-                    return new Vector3f(xPos, yPos, zPos);
+                    return store.set(xPos, yPos, zPos);
                 }
                 case CenterBottom -> {
-                    if ( hasParentAndLockscaling() ) {
+                    if ( parentLockscaling ) {
                         xPos = offsetX * fac.y;
                         yPos = -(getParentSize().y * 0.5f) + (height * 0.5f) + (offsetY * fac.y);
                     } else {
                         xPos = offsetX * fac.x;
                         yPos = -(getParentSize().y * 0.5f) + (height * 0.5f) + (offsetY * fac.y);
                     }
-                    return new Vector3f(xPos, yPos, zPos);
+                    return store.set(xPos, yPos, zPos);
                 }
                 case CenterTop -> {
-                    if ( hasParentAndLockscaling() ) {
+                    if ( parentLockscaling ) {
                         xPos = offsetX * fac.y;
                         yPos = (getParentSize().y * 0.5f) - (height * 0.5f) - (offsetY * fac.y);
                     } else {
                         xPos = offsetX * fac.x;
                         yPos = (getParentSize().y * 0.5f) - (height * 0.5f) - (offsetY * fac.y);
                     }
-                    return new Vector3f(xPos, yPos, zPos);
+                    return store.set(xPos, yPos, zPos);
                 }
                 case LeftBottom -> {
-                    if ( hasParentAndLockscaling() ) {
+                    if ( parentLockscaling ) {
                         xPos = -(getParentSize().x * 0.5f) + (width * 0.5f) + offsetX * fac.y;
                         yPos = -(getParentSize().y * 0.5f) + (height * 0.5f) + (offsetY * fac.y);
                     } else {
                         xPos = -(getParentSize().x * 0.5f) + (width * 0.5f) + offsetX * fac.x;
                         yPos = -(getParentSize().y * 0.5f) + (height * 0.5f) + (offsetY * fac.y);
                     }
-                    return new Vector3f(xPos, yPos, zPos);
+                    return store.set(xPos, yPos, zPos);
                 }
                 case LeftCenter -> {
-                    if ( hasParentAndLockscaling() ) {
+                    if ( parentLockscaling ) {
                         xPos = -(getParentSize().x * 0.5f) + (width * 0.5f) + offsetX * fac.y;
                         yPos = (offsetY * fac.y);
                     } else {
                         xPos = -(getParentSize().x * 0.5f) + (width * 0.5f) + offsetX * fac.x;
                         yPos = (offsetY * fac.y);
                     }
-                    return new Vector3f(xPos, yPos, zPos);
+                    return store.set(xPos, yPos, zPos);
                 }
                 case LeftTop -> {
-                    if ( hasParentAndLockscaling() ) {
+                    if ( parentLockscaling ) {
                         xPos = -(getParentSize().x * 0.5f) + (width * 0.5f) + offsetX * fac.y;
                         yPos = (getParentSize().y * 0.5f) - (height * 0.5f) - (offsetY * fac.y);
                     } else {
                         xPos = -(getParentSize().x * 0.5f) + (width * 0.5f) + offsetX * fac.x;
                         yPos = (getParentSize().y * 0.5f) - (height * 0.5f) - (offsetY * fac.y);
                     }
-                    return new Vector3f(xPos, yPos, zPos);
+                    return store.set(xPos, yPos, zPos);
                 }
                 case RightBottom -> {
-                    if ( hasParentAndLockscaling() ) {
+                    if ( parentLockscaling ) {
                         xPos = (getParentSize().x * 0.5f) - (width * 0.5f) - (offsetX * fac.y);
                         yPos = -(getParentSize().y * 0.5f) + (height * 0.5f) + (offsetY * fac.y);
                     } else {
                         xPos = (getParentSize().x * 0.5f) - (width * 0.5f) - (offsetX * fac.x);
                         yPos = -(getParentSize().y * 0.5f) + (height * 0.5f) + (offsetY * fac.y);
                     }
-                    return new Vector3f(xPos, yPos, zPos);
+                    return store.set(xPos, yPos, zPos);
                 }
                 case RightCenter -> {
-                    if ( hasParentAndLockscaling() ) {
+                    if ( parentLockscaling ) {
                         xPos = (getParentSize().x * 0.5f) - (width * 0.5f) - (offsetX * fac.y);
                         yPos = (offsetY * fac.y);
                     } else {
                         xPos = (getParentSize().x * 0.5f) - (width * 0.5f) - (offsetX * fac.x);
                         yPos = (offsetY * fac.y);
                     }
-                    return new Vector3f(xPos, yPos, zPos);
+                    return store.set(xPos, yPos, zPos);
                 }
                 case RightTop -> {
-                    if ( hasParentAndLockscaling() ) {
+                    if ( parentLockscaling ) {
                         xPos = (getParentSize().x * 0.5f) - (width * 0.5f) - (offsetX * fac.y);
                         yPos = (getParentSize().y * 0.5f) - (height * 0.5f) - (offsetY * fac.y);
                     } else {
                         xPos = (getParentSize().x * 0.5f) - (width * 0.5f) - (offsetX * fac.x);
                         yPos = (getParentSize().y* 0.5f) - (height * 0.5f) - (offsetY * fac.y);
                     }
-                    return new Vector3f(xPos, yPos, zPos);
+                    return store.set(xPos, yPos, zPos);
                 }
                 default -> throw new AssertionError();
             }
         }
         
         private Vector3f getParentSize() {
-            return getGuiControl().getSize();
+            return parentSize;
         }
     }
     
     public static class RootPane {    
         public Vector3f window;
         public Vector3f resolution;
+        private final Vector3f scaleFactor = new Vector3f();
         public RootPane() {
         }
         
+        /**
+         * @return the scale factor, shared, do not modify
+         */
         public Vector3f getScaleFactor() {
             float rx = resolution.x == 0 ? 0 : window.x / resolution.x,
                   ry = resolution.y == 0 ? 0 : window.y / resolution.y,
                   rz = resolution.z == 0 ? 0 : resolution.z / window.z;
-            return new Vector3f(rx, ry, rz);
+            return scaleFactor.set(rx, ry, rz);
         }
         public Vector3f getWindow() { return window; }
         public Vector3f getResolution() { return resolution; }
@@ -299,6 +323,14 @@ public class MyLayout extends AbstractGuiComponent implements GuiLayout {
     }
     
     private final Map<Node, Control> children = new HashMap<>();
+    
+    /*
+     * What the children were last laid out against; when any of it changes
+     * every child is laid out again.
+     */
+    private final Vector3f parentSize  = new Vector3f();
+    private final Vector3f scaleFactor = new Vector3f();
+    private boolean parentLockscaling;
         
     private final RootPane rootPane;    
     public MyLayout(RootPane rootPane) {
@@ -354,12 +386,46 @@ public class MyLayout extends AbstractGuiComponent implements GuiLayout {
     
     @Override
     public void reshape(Vector3f pos, Vector3f size) {
-        for (final Map.Entry<Node, Control> entry : children.entrySet()) {
-            if ( entry.getValue() == null ) 
-                continue;
-            
-            Control control = entry.getValue();
-            control.resize();
+        layoutChildren();
+    }
+    
+    /**
+     * Lays out the children whose size or position may have changed: all of
+     * them after a resize or a resolution change, otherwise the ones with a
+     * changed attribute or preferred size. A new scale factor also scales the
+     * font sizes again. Clean children keep their cached
+     * size and position and are not reshaped; nested MyLayouts are still
+     * walked into, as a change deep down only invalidates the root. Static
+     * panels holding this one are baked again when a child was reshaped.
+     */
+    private void layoutChildren() {
+        final Vector3f size = getGuiControl().getSize();
+        final Vector3f fac = rootPane.getScaleFactor();
+        final boolean lockscaling = hasParentAndLockscaling();
+        final boolean rescaled = !fac.equals(scaleFactor);
+        final boolean all = !size.equals(parentSize) || rescaled 
+                                || lockscaling != parentLockscaling;
+        if ( all ) {
+            parentSize.set(size);
+            scaleFactor.set(fac);
+            parentLockscaling = lockscaling;
+        }
+        
+        boolean reshaped = false;
+        for (final Control control : children.values()) {
+            if ( rescaled && control.attributes.fontsize > 0 ) {
+                control.setFontSize();
+            }
+            final boolean resized = control.updatePreferredSize();
+            if ( all || resized || control.dirty ) {
+                control.resize();
+                reshaped = true;
+            } else if ( control.gc.getLayout() instanceof MyLayout layout ) {
+                layout.layoutChildren();
+            }
+        }
+        if ( reshaped ) {
+            StaticPanel.invalidate(getNode());
         }
     }
     
@@ -405,6 +471,7 @@ public class MyLayout extends AbstractGuiComponent implements GuiLayout {
             case ALIGNMENT -> {
                 if (value instanceof Alignment alignment) {
                     cl.attributes.setAlignment(alignment);
+                    cl.dirty = true;
                     cl.gc.invalidate();
                     return true;
                 }
@@ -413,6 +480,7 @@ public class MyLayout extends AbstractGuiComponent implements GuiLayout {
             case DEPTH_POSITION -> {
                 if (value instanceof Number number) {
                     cl.attributes.originalPos.setZ(number.floatValue());
+                    cl.dirty = true;
                     cl.gc.invalidate();
                     return true;
                 }
@@ -429,6 +497,7 @@ public class MyLayout extends AbstractGuiComponent implements GuiLayout {
             case LOCK_SCALING -> {
                 if (value instanceof Boolean aBoolean) {
                     cl.attributes.setLockscaling(aBoolean);
+                    cl.dirty = true;
                     cl.gc.invalidate();
                     return true;
                 }
@@ -437,6 +506,7 @@ public class MyLayout extends AbstractGuiComponent implements GuiLayout {
             case POSITION -> {
                 if (value instanceof Vector3f vector3f) {
                     cl.attributes.setOriginalPos(vector3f);
+                    cl.dirty = true;
                     cl.gc.invalidate();
                     return true;
                 }
@@ -59,7 +59,7 @@ public class PauseMenu extends Window {
         MyLayout layout = new MyLayout(pane);
         
         Container leftPanel = new Container(layout);        
-        leftPanel.setBackground(new UIImage("Interface/UI/panel_01.png"));
+        leftPanel.setBackground(new UISprite("panel_01"));
         leftPanel.setPreferredSize(new Vector3f(500, 700, 0));
         getRootPane().addChild(leftPanel, MyLayout.Alignment.LeftCenter, false);
 
@@ -86,7 +86,7 @@ public class PauseMenu extends Window {
         layout.setAttribute(MyLayout.FONT_SIZE, nameMenu, 25.0f);
         
         Button buttonResume = new Button("Resume", new ElementId("MyButton"));
-        buttonResume.setBackground(new UIImage("Interface/UI/button_01.png"));
+        buttonResume.setBackground(new UISprite("button_01"));
         buttonResume.setPreferredSize(new Vector3f(300, 45, 0));
         buttonResume.setFont(GuiGlobals.getInstance().loadFont("/Interface/Fonts/OrbitronSemiBold.fnt"));
         buttonResume.setColor(new ColorRGBA(0.522f, 0.537f, 0.584f, 1.0f));
@@ -101,7 +101,7 @@ public class PauseMenu extends Window {
         layout.setAttribute(MyLayout.FONT_SIZE, buttonResume, 20.0f);
         
         Button button2 = new Button("Exit", new ElementId("MyButton"));
-        button2.setBackground(new UIImage("Interface/UI/button_01.png"));
+        button2.setBackground(new UISprite("button_01"));
         button2.setPreferredSize(new Vector3f(300, 45, 0));
         button2.setFont(GuiGlobals.getInstance().loadFont("/Interface/Fonts/OrbitronSemiBold.fnt"));
         button2.setColor(new ColorRGBA(0.522f, 0.537f, 0.584f, 1.0f));
@@ -116,5 +116,6 @@ public class PauseMenu extends Window {
         layout.setAttribute(MyLayout.POSITION, button2, new Vector3f(50, -30, 1));
         layout.setAttribute(MyLayout.FONT_SIZE, button2, 20.0f);        
         setAlpha(0);
+        setStaticPanel(true);
     }
 }
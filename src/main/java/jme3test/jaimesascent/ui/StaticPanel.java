@@ -0,0 +1,431 @@
+/*
+ * Copyright (c) 2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package jme3test.jaimesascent.ui;
+
+import com.jme3.collision.Collidable;
+import com.jme3.collision.CollisionResults;
+import com.jme3.font.BitmapText;
+import com.jme3.material.MatParam;
+import com.jme3.material.Material;
+import com.jme3.math.ColorRGBA;
+import com.jme3.math.Transform;
+import com.jme3.math.Vector3f;
+import com.jme3.renderer.RenderManager;
+import com.jme3.renderer.ViewPort;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.Node;
+import com.jme3.scene.Spatial;
+import com.jme3.scene.VertexBuffer;
+import com.jme3.scene.control.AbstractControl;
+import com.jme3.scene.mesh.IndexBuffer;
+import com.jme3.util.BufferUtils;
+import com.simsilica.lemur.Button;
+import com.simsilica.lemur.TextField;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Draws a GUI subtree that does not animate as a few merged meshes, one per
+ * run of geometries with the same material in draw order, instead of one
+ * draw call per background and text. Add it to the panel:
+ * <pre>
+ * container.addControl(new StaticPanel());
+ * </pre>
+ * The originals stay in the scene, hidden, so picking and the layout keep
+ * working on them. The panel is baked again after a {@link MyLayout} pass
+ * under it moves something or the text of a label in it changes; a change
+ * of alpha or tint only has to call {@link #recolor(Spatial)}, which
+ * rewrites the vertex colors of the batches, anything else that changes
+ * what it looks like must call {@link #invalidate(Spatial)}. Buttons and text fields, whose look follows
+ * hover, press and focus, are not baked. Subtrees with their own StaticPanel
+ * are left to it.
+ */
+public class StaticPanel extends AbstractControl {
+
+    private static final String UNSHADED = "Common/MatDefs/Misc/Unshaded.j3md";
+    private static final String COLOR = "Color";
+    private static final String VERTEX_COLOR = "VertexColor";
+
+    private record Source(Geometry geometry, Transform transform) {
+    }
+
+    /**
+     * Merged geometry, never hit by picking, the hidden sources are.
+     */
+    private static class Batch extends Geometry {
+
+        private final List<Source> sources;
+
+        Batch(String name, Mesh mesh, List<Source> sources) {
+            super(name, mesh);
+            this.sources = sources;
+        }
+
+        @Override
+        public int collideWith(Collidable other, CollisionResults results) {
+            return 0;
+        }
+    }
+
+    private final Node batches = new Node("StaticPanel");
+    private final List<Geometry> hidden = new ArrayList<>();
+    private final List<Spatial.CullHint> hints = new ArrayList<>();
+    private final List<BitmapText> texts = new ArrayList<>();
+    private final List<String> bakedTexts = new ArrayList<>();
+    private boolean dirty = true;
+    private boolean recolor = false;
+
+    /**
+     * Bakes the panel again before it is drawn next.
+     */
+    public void invalidate() {
+        dirty = true;
+    }
+
+    /**
+     * Invalidates the static panels holding spatial.
+     */
+    public static void invalidate(Spatial spatial) {
+        for (Spatial current = spatial; current != null; current = current.getParent()) {
+            final StaticPanel panel = current.getControl(StaticPanel.class);
+            if (panel != null) {
+                panel.invalidate();
+            }
+        }
+    }
+
+    /**
+     * Rewrites the vertex colors of the batches from the sources before the
+     * panel is drawn next, without baking it again.
+     */
+    public void recolor() {
+        recolor = true;
+    }
+
+    /**
+     * Recolors the static panels holding spatial.
+     */
+    public static void recolor(Spatial spatial) {
+        for (Spatial current = spatial; current != null; current = current.getParent()) {
+            final StaticPanel panel = current.getControl(StaticPanel.class);
+            if (panel != null) {
+                panel.recolor();
+            }
+        }
+    }
+
+    /**
+     * @return geometries merged into the batches
+     */
+    public int getSourceCount() {
+        return hidden.size();
+    }
+
+    /**
+     * @return merged geometries, the draw calls of the panel
+     */
+    public int getBatchCount() {
+        return batches.getQuantity();
+    }
+
+    @Override
+    public void setSpatial(Spatial spatial) {
+        if (spatial == null && this.spatial != null) {
+            restore();
+            batches.detachAllChildren();
+            batches.removeFromParent();
+        }
+        super.setSpatial(spatial);
+        dirty = true;
+    }
+
+    @Override
+    protected void controlUpdate(float tpf) {
+        // runs after the GUI is laid out and before it is drawn
+        if (dirty || textChanged()) {
+            dirty = false;
+            recolor = false;
+            bake();
+        } else if (recolor) {
+            recolor = false;
+            writeColors();
+        }
+    }
+
+    /**
+     * @return true when a baked text was set to something else, which may
+     * keep its size and so not lay the panel out again
+     */
+    private boolean textChanged() {
+        for (int i = 0; i < texts.size(); i++) {
+            if (!Objects.equals(texts.get(i).getText(), bakedTexts.get(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    protected void controlRender(RenderManager rm, ViewPort vp) {
+    }
+
+    private void bake() {
+        restore();
+        batches.detachAllChildren();
+        texts.clear();
+        bakedTexts.clear();
+        final List<Source> sources = new ArrayList<>();
+        collect((Node) spatial, sources);
+        // the GUI bucket draws by z and keeps the scene order on ties
+        sources.sort(Comparator.comparingDouble(source -> source.transform().getTranslation().z));
+
+        final List<Source> run = new ArrayList<>();
+        for (Source source : sources) {
+            if (!run.isEmpty() && !compatible(run.get(0).geometry().getMaterial(), source.geometry().getMaterial())) {
+                batches.attachChild(merge(run));
+                run.clear();
+            }
+            run.add(source);
+        }
+        if (!run.isEmpty()) {
+            batches.attachChild(merge(run));
+        }
+        for (Source source : sources) {
+            hints.add(source.geometry().getCullHint());
+            hidden.add(source.geometry());
+            source.geometry().setCullHint(Spatial.CullHint.Always);
+        }
+        ((Node) spatial).attachChild(batches);
+    }
+
+    private void writeColors() {
+        for (Spatial child : batches.getChildren()) {
+            final Batch batch = (Batch) child;
+            int vertexCount = 0;
+            for (Source source : batch.sources) {
+                if (source.geometry().getParent() instanceof BitmapText text) {
+                    text.updateLogicalState(0);
+                }
+                vertexCount += source.geometry().getMesh().getVertexCount();
+            }
+            final VertexBuffer colors = batch.getMesh().getBuffer(VertexBuffer.Type.Color);
+            final FloatBuffer data = (FloatBuffer) colors.getData();
+            if (vertexCount * 4 != data.capacity()) {
+                // the text changed under it
+                bake();
+                return;
+            }
+            data.clear();
+            writeColors(batch.sources, data);
+            colors.updateData(data.flip());
+        }
+    }
+
+    private void restore() {
+        for (int i = 0; i < hidden.size(); i++) {
+            hidden.get(i).setCullHint(hints.get(i));
+        }
+        hidden.clear();
+        hints.clear();
+    }
+
+    private void collect(Node node, List<Source> sources) {
+        for (Spatial child : node.getChildren()) {
+            if (child == batches || child.getCullHint() == Spatial.CullHint.Always
+                    || child.getControl(StaticPanel.class) != null
+                    || child instanceof Button || child instanceof TextField) {
+                continue;
+            }
+            if (child instanceof BitmapText text) {
+                // lays the text out now if it changed, it is otherwise done
+                // after this control runs
+                text.updateLogicalState(0);
+                texts.add(text);
+                bakedTexts.add(text.getText());
+            }
+            if (child instanceof Node childNode) {
+                collect(childNode, sources);
+            } else if (child instanceof Geometry geometry && bakeable(geometry)) {
+                final Transform transform = geometry.getLocalTransform().clone();
+                for (Node parent = geometry.getParent(); parent != spatial; parent = parent.getParent()) {
+                    transform.combineWithParent(parent.getLocalTransform());
+                }
+                sources.add(new Source(geometry, transform));
+            }
+        }
+    }
+
+    private static boolean bakeable(Geometry geometry) {
+        final Material material = geometry.getMaterial();
+        final Mesh mesh = geometry.getMesh();
+        return material != null && UNSHADED.equals(material.getMaterialDef().getAssetName())
+                && material.getParam("LightMap") == null
+                && mesh.getMode() == Mesh.Mode.Triangles
+                && mesh.getBuffer(VertexBuffer.Type.Position) != null
+                && mesh.getBuffer(VertexBuffer.Type.Position).getNumComponents() == 3;
+    }
+
+    /**
+     * @return true when the materials differ at most in their tint, which is
+     * baked into the vertex colors
+     */
+    private static boolean compatible(Material a, Material b) {
+        if (a == b) {
+            return true;
+        }
+        if (a.getMaterialDef() != b.getMaterialDef()
+                || !a.getAdditionalRenderState().equals(b.getAdditionalRenderState())) {
+            return false;
+        }
+        return contains(a, b) && contains(b, a);
+    }
+
+    private static boolean contains(Material a, Material b) {
+        for (MatParam param : a.getParams()) {
+            if (param.getName().equals(COLOR) || param.getName().equals(VERTEX_COLOR)) {
+                continue;
+            }
+            final MatParam other = b.getParam(param.getName());
+            if (other == null || !Objects.equals(param.getValue(), other.getValue())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Geometry merge(List<Source> run) {
+        int vertexCount = 0;
+        int indexCount = 0;
+        for (Source source : run) {
+            vertexCount += source.geometry().getMesh().getVertexCount();
+            indexCount += source.geometry().getMesh().getTriangleCount() * 3;
+        }
+        final Material first = run.get(0).geometry().getMaterial();
+        final boolean textured = first.getParam("ColorMap") != null;
+        final FloatBuffer positions = BufferUtils.createFloatBuffer(vertexCount * 3);
+        final FloatBuffer texCoords = textured ? BufferUtils.createFloatBuffer(vertexCount * 2) : null;
+        final FloatBuffer colors = BufferUtils.createFloatBuffer(vertexCount * 4);
+        final IndexBuffer indices = IndexBuffer.createIndexBuffer(vertexCount, indexCount);
+
+        // the batch sits at the depth of its first source, for the bucket
+        final float z = run.get(0).transform().getTranslation().z;
+        final Vector3f position = new Vector3f();
+        int offset = 0;
+        int index = 0;
+        for (Source source : run) {
+            final Mesh mesh = source.geometry().getMesh();
+            final FloatBuffer sourcePositions = mesh.getFloatBuffer(VertexBuffer.Type.Position);
+            final FloatBuffer sourceTexCoords = mesh.getFloatBuffer(VertexBuffer.Type.TexCoord);
+
+            for (int i = 0; i < mesh.getVertexCount(); i++) {
+                position.set(sourcePositions.get(i * 3), sourcePositions.get(i * 3 + 1), sourcePositions.get(i * 3 + 2));
+                source.transform().transformVector(position, position);
+                positions.put(position.x).put(position.y).put(position.z - z);
+                if (textured) {
+                    if (sourceTexCoords != null) {
+                        texCoords.put(sourceTexCoords.get(i * 2)).put(sourceTexCoords.get(i * 2 + 1));
+                    } else {
+                        texCoords.put(0).put(0);
+                    }
+                }
+            }
+            final IndexBuffer sourceIndices = mesh.getIndicesAsList();
+            for (int i = 0; i < sourceIndices.size(); i++) {
+                indices.put(index++, sourceIndices.get(i) + offset);
+            }
+            offset += mesh.getVertexCount();
+        }
+        writeColors(run, colors);
+
+        final Mesh mesh = new Mesh();
+        mesh.setBuffer(VertexBuffer.Type.Position, 3, positions.flip());
+        if (textured) {
+            mesh.setBuffer(VertexBuffer.Type.TexCoord, 2, texCoords.flip());
+        }
+        mesh.setBuffer(VertexBuffer.Type.Color, 4, colors.flip());
+        mesh.setBuffer(VertexBuffer.Type.Index, 3, indices.getFormat(), indices.getBuffer());
+        mesh.updateBound();
+        mesh.updateCounts();
+
+        final Material material = first.clone();
+        material.clearParam(COLOR);
+        material.setBoolean(VERTEX_COLOR, true);
+        final Geometry batch = new Batch("StaticPanel." + batches.getQuantity(), mesh, new ArrayList<>(run));
+        batch.setMaterial(material);
+        batch.setLocalTranslation(0, 0, z);
+        return batch;
+    }
+
+    /**
+     * Puts the tint of each source times its vertex colors.
+     */
+    private static void writeColors(List<Source> run, FloatBuffer colors) {
+        final ColorRGBA tint = new ColorRGBA();
+        final ColorRGBA color = new ColorRGBA();
+        for (Source source : run) {
+            final Mesh mesh = source.geometry().getMesh();
+            final Material material = source.geometry().getMaterial();
+            final VertexBuffer sourceColors = material.getParam(VERTEX_COLOR) != null
+                    && Boolean.TRUE.equals(material.getParam(VERTEX_COLOR).getValue())
+                    ? mesh.getBuffer(VertexBuffer.Type.Color) : null;
+            final MatParam tintParam = material.getParam(COLOR);
+            tint.set(tintParam != null ? (ColorRGBA) tintParam.getValue() : ColorRGBA.White);
+            for (int i = 0; i < mesh.getVertexCount(); i++) {
+                color.set(tint);
+                if (sourceColors != null) {
+                    multiplyVertexColor(sourceColors, i, color);
+                }
+                colors.put(color.r).put(color.g).put(color.b).put(color.a);
+            }
+        }
+    }
+
+    private static void multiplyVertexColor(VertexBuffer colors, int vertex, ColorRGBA store) {
+        final int i = vertex * 4;
+        if (colors.getData() instanceof FloatBuffer data) {
+            store.r *= data.get(i);
+            store.g *= data.get(i + 1);
+            store.b *= data.get(i + 2);
+            store.a *= data.get(i + 3);
+        } else if (colors.getData() instanceof ByteBuffer data) {
+            store.r *= (data.get(i) & 0xFF) / 255f;
+            store.g *= (data.get(i + 1) & 0xFF) / 255f;
+            store.b *= (data.get(i + 2) & 0xFF) / 255f;
+            store.a *= (data.get(i + 3) & 0xFF) / 255f;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package jme3test.jaimesascent.ui;
+
+import com.jme3.asset.AssetInfo;
+import com.jme3.asset.AssetKey;
+import com.jme3.asset.AssetManager;
+import com.jme3.asset.TextureKey;
+import com.jme3.asset.plugins.ClasspathLocator;
+import com.jme3.math.Vector4f;
+import com.jme3.texture.Texture;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The UI textures packed into one texture by the packUiAtlas task, so the
+ * menus bind a single texture. The index next to the atlas holds the pixel
+ * rectangle of every sprite, {@code name=x y width height} from the top left.
+ * Without the index (a run from the sources, without the assets jar) there
+ * is no atlas and the sprites load their own textures.
+ */
+public final class UIAtlas {
+
+    private static final Logger LOG = Logger.getLogger(UIAtlas.class.getName());
+
+    public static final String FOLDER = "Interface/UI/";
+    public static final String TEXTURE = FOLDER + "atlas.png";
+    public static final String INDEX = FOLDER + "atlas.properties";
+
+    private static UIAtlas instance;
+
+    private final Texture texture;
+    private final Map<String, Vector4f> regions = new HashMap<>();
+
+    private UIAtlas(Texture texture, Properties index) {
+        this.texture = texture;
+        final float width = texture.getImage().getWidth();
+        final float height = texture.getImage().getHeight();
+        for (String name : index.stringPropertyNames()) {
+            final String[] rect = index.getProperty(name).trim().split("\\s+");
+            final int x = Integer.parseInt(rect[0]);
+            final int y = Integer.parseInt(rect[1]);
+            final int w = Integer.parseInt(rect[2]);
+            final int h = Integer.parseInt(rect[3]);
+            // the texture is flipped, v grows upwards from the last row
+            regions.put(name, new Vector4f(x / width, 1 - (y + h) / height, (x + w) / width, 1 - y / height));
+        }
+    }
+
+    /**
+     * Loads the atlas of the assets, called once the GUI is initialized.
+     */
+    public static void initialize(AssetManager assetManager) {
+        instance = null;
+        // the index is looked up on the classpath, where the assets jar is,
+        // so a missing atlas does not warn
+        final AssetInfo info = new ClasspathLocator().locate(assetManager, new AssetKey<>(INDEX));
+        if (info == null) {
+            LOG.info("No UI atlas, the GUI loads its textures one by one.");
+            return;
+        }
+        final Properties index = new Properties();
+        try (InputStream in = info.openStream()) {
+            index.load(in);
+        } catch (IOException exception) {
+            LOG.log(Level.WARNING, "Could not read the UI atlas index.", exception);
+            return;
+        }
+        final Texture texture = assetManager.loadTexture(new TextureKey(TEXTURE));
+        texture.setWrap(Texture.WrapMode.EdgeClamp);
+        instance = new UIAtlas(texture, index);
+    }
+
+    /**
+     * @return the atlas, or null when there is none
+     */
+    public static UIAtlas getInstance() {
+        return instance;
+    }
+
+    public Texture getTexture() {
+        return texture;
+    }
+
+    /**
+     * @return the texture coordinates of the sprite as (u0, v0, u1, v1) from
+     * the bottom left, or null when the atlas does not hold it
+     */
+    public Vector4f getRegion(String name) {
+        return regions.get(name);
+    }
+}
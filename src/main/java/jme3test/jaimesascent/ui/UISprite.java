@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package jme3test.jaimesascent.ui;
+
+import com.jme3.math.ColorRGBA;
+import com.jme3.math.Vector3f;
+import com.jme3.math.Vector4f;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Spatial;
+import com.jme3.scene.VertexBuffer;
+import com.jme3.texture.Texture;
+import com.simsilica.lemur.GuiGlobals;
+import java.nio.FloatBuffer;
+
+/**
+ * A {@link UIImage} named by its sprite in the {@link UIAtlas}, drawn from the
+ * atlas region so every sprite shares one texture. Falls back to
+ * {@code Interface/UI/<name>.png} when the atlas does not hold it.
+ */
+public class UISprite extends UIImage {
+
+    private final Vector4f region;
+    private Geometry quad;
+
+    public UISprite(String name) {
+        this(name, null);
+    }
+
+    public UISprite(String name, ColorRGBA color) {
+        this(name, UIAtlas.getInstance(), color);
+    }
+
+    private UISprite(String name, UIAtlas atlas, ColorRGBA color) {
+        super(texture(name, atlas), color);
+        this.region = atlas != null ? atlas.getRegion(name) : null;
+    }
+
+    private static Texture texture(String name, UIAtlas atlas) {
+        if (atlas != null && atlas.getRegion(name) != null) {
+            return atlas.getTexture();
+        }
+        return GuiGlobals.getInstance().loadTexture(UIAtlas.FOLDER + name + ".png", true, false);
+    }
+
+    @Override
+    protected void refreshBackground(Vector3f size) {
+        super.refreshBackground(size);
+        if (region == null) {
+            return;
+        }
+        if (quad == null) {
+            quad = findQuad();
+        }
+        // the quad resets its texture coordinates to the unit square whenever
+        // it is resized
+        final VertexBuffer buffer = quad.getMesh().getBuffer(VertexBuffer.Type.TexCoord);
+        final FloatBuffer texCoords = (FloatBuffer) buffer.getData();
+        if (texCoords.get(0) == region.x && texCoords.get(1) == region.y
+                && texCoords.get(4) == region.z && texCoords.get(5) == region.w) {
+            return;
+        }
+        texCoords.clear();
+        texCoords.put(region.x).put(region.y)
+                .put(region.z).put(region.y)
+                .put(region.z).put(region.w)
+                .put(region.x).put(region.w);
+        texCoords.clear();
+        buffer.setUpdateNeeded();
+    }
+
+    private Geometry findQuad() {
+        for (Spatial child : getNode().getChildren()) {
+            if (child instanceof Geometry && ((Geometry) child).getMaterial() == getMaterial().getMaterial()) {
+                return (Geometry) child;
+            }
+        }
+        throw new IllegalStateException("The background quad is not attached");
+    }
+
+    @Override
+    public UISprite clone() {
+        final UISprite clone = (UISprite) super.clone();
+        clone.quad = null;
+        return clone;
+    }
+}
@@ -61,7 +61,7 @@ public class Window extends Panel {
             initComponents();
         }        
         private void initComponents() {
-            setBackground(new UIImage("Interface/UI/fill.png", new ColorRGBA(0, 0, 0, 1)));
+            setBackground(new UISprite("fill", new ColorRGBA(0, 0, 0, 1)));
             setAlpha(0.8f);
         }
 
@@ -114,8 +114,14 @@ public class Window extends Panel {
     
     protected void resetStateView() {
         Vector3f myPref = getPreferredSize();
-        fader.setPreferredSize(myPref.clone());
-        rootPane.setPreferredSize(myPref.clone());
+        // Only copy when the size actually changed; reshape fires on every
+        // relayout and the views keep the vector they are given.
+        if (!myPref.equals(fader.getPreferredSize())) {
+            fader.setPreferredSize(myPref.clone());
+        }
+        if (!myPref.equals(rootPane.getPreferredSize())) {
+            rootPane.setPreferredSize(myPref.clone());
+        }
     }
     
     private void initComponents() {
@@ -151,6 +157,31 @@ public class Window extends Panel {
         addEffect("close", close);
     }
     
+    @Override
+    public void setAlpha(float alpha, boolean recursive) {
+        super.setAlpha(alpha, recursive);
+        StaticPanel.recolor(this);
+    }
+    
+    /**
+     * Draws the window as a few merged meshes while it does not change, see
+     * {@link StaticPanel}.
+     */
+    public void setStaticPanel(boolean staticPanel) {
+        if (staticPanel == isStaticPanel()) {
+            return;
+        }
+        if (staticPanel) {
+            addControl(new StaticPanel());
+        } else {
+            removeControl(StaticPanel.class);
+        }
+    }
+    
+    public boolean isStaticPanel() {
+        return getControl(StaticPanel.class) != null;
+    }
+    
     public boolean isVisible() {
         return visible;
     }
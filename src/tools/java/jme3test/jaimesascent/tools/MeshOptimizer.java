@@ -0,0 +1,389 @@
+/*
+ * Copyright (c) 2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package jme3test.jaimesascent.tools;
+
+import com.jme3.asset.AssetManager;
+import com.jme3.asset.ModelKey;
+import com.jme3.asset.plugins.FileLocator;
+import com.jme3.export.binary.BinaryExporter;
+import com.jme3.material.Material;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.Spatial;
+import com.jme3.scene.VertexBuffer;
+import com.jme3.scene.mesh.IndexBuffer;
+import com.jme3.scene.mesh.IndexIntBuffer;
+import com.jme3.scene.mesh.IndexShortBuffer;
+import com.jme3.system.JmeSystem;
+import com.jme3.util.BufferUtils;
+import java.io.File;
+import java.io.IOException;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ *
+ * Rewrites the models of the game into leaner j3o files: identical vertices
+ * are welded, triangles are ordered for the post-transform vertex cache
+ * (Forsyth's linear-speed algorithm) and vertices by first use, indices are
+ * 16 bit whenever they fit, texture coordinates inside [0, 1] become
+ * normalized shorts and tangents nobody samples a normal map with are
+ * dropped. Positions and normals stay float, GeometryBatchFactory and
+ * software skinning read them as float buffers. Run by the compileMeshes
+ * task of the assets project:
+ * <pre>
+ * MeshOptimizer &lt;assets folder&gt; &lt;output folder&gt;
+ * </pre>
+ * Prints the bytes saved per model.
+ */
+public class MeshOptimizer {
+
+    private static final int CACHE_SIZE = 32;
+    private static final int FIFO_SIZE = 16;
+    private static final float TEXCOORD_EPSILON = 1e-5f;
+
+    private final AssetManager assetManager;
+    private final File assets;
+    private final File output;
+
+    public MeshOptimizer(File assets, File output) {
+        this.assetManager = JmeSystem.newAssetManager(
+                Thread.currentThread().getContextClassLoader().getResource("com/jme3/asset/Desktop.cfg"));
+        this.assetManager.registerLocator(assets.getAbsolutePath(), FileLocator.class);
+        this.assets = assets;
+        this.output = output;
+    }
+
+    public static void main(String[] args) throws IOException {
+        final MeshOptimizer optimizer = new MeshOptimizer(new File(args[0]), new File(args[1]));
+        optimizer.optimize("Scenes/labyrinth.j3o");
+        optimizer.optimize("Models/Jaime/Jaime.j3o");
+    }
+
+    /**
+     * Writes the optimized model to the same path in the output and prints
+     * what it saved.
+     */
+    public void optimize(String path) throws IOException {
+        final Spatial model = assetManager.loadModel(new ModelKey(path));
+        final int[] before = new int[3];
+        final int[] after = new int[3];
+        final double[] misses = new double[2];
+        final int[] triangles = new int[1];
+        model.depthFirstTraversal(spatial -> {
+            if (spatial instanceof Geometry geometry && isOptimizable(geometry.getMesh())) {
+                final Mesh mesh = geometry.getMesh();
+                count(mesh, before);
+                misses[0] += cacheMisses(indices(mesh));
+                optimize(mesh, geometry.getMaterial());
+                count(mesh, after);
+                misses[1] += cacheMisses(indices(mesh));
+                triangles[0] += mesh.getTriangleCount();
+            }
+        });
+
+        final File file = new File(output, path);
+        file.getParentFile().mkdirs();
+        BinaryExporter.getInstance().save(model, file);
+        System.out.printf("%s: %d -> %d vertices, ACMR %.2f -> %.2f, vertex data %d -> %d bytes, "
+                + "index data %d -> %d bytes, file %d -> %d bytes (%d saved)%n", path, before[0], after[0],
+                misses[0] / triangles[0], misses[1] / triangles[0], before[1], after[1], before[2], after[2],
+                new File(assets, path).length(), file.length(), new File(assets, path).length() - file.length());
+    }
+
+    private static boolean isOptimizable(Mesh mesh) {
+        return mesh.getMode() == Mesh.Mode.Triangles && mesh.getNumLodLevels() == 0
+                && mesh.getBuffer(VertexBuffer.Type.Index) != null;
+    }
+
+    private static void count(Mesh mesh, int[] store) {
+        store[0] += mesh.getVertexCount();
+        for (VertexBuffer buffer : mesh.getBufferList()) {
+            if (buffer.getData() != null) {
+                final int bytes = buffer.getData().limit() * buffer.getFormat().getComponentSize();
+                store[buffer.getBufferType() == VertexBuffer.Type.Index ? 2 : 1] += bytes;
+            }
+        }
+    }
+
+    private static int[] indices(Mesh mesh) {
+        final IndexBuffer buffer = mesh.getIndexBuffer();
+        final int[] indices = new int[buffer.size()];
+        for (int i = 0; i < indices.length; i++) {
+            indices[i] = buffer.get(i);
+        }
+        return indices;
+    }
+
+    private static void optimize(Mesh mesh, Material material) {
+        if (material.getParam("NormalMap") == null && material.getParam("ParallaxMap") == null) {
+            mesh.clearBuffer(VertexBuffer.Type.Tangent);
+            mesh.clearBuffer(VertexBuffer.Type.BindPoseTangent);
+        }
+
+        final int[] indices = indices(mesh);
+        final int[] weld = weld(mesh);
+        for (int i = 0; i < indices.length; i++) {
+            indices[i] = weld[indices[i]];
+        }
+        final int[] ordered = orderForCache(indices, mesh.getVertexCount());
+
+        // vertices in the order the triangles first use them
+        final int[] remap = new int[mesh.getVertexCount()];
+        Arrays.fill(remap, -1);
+        final List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < ordered.length; i++) {
+            if (remap[ordered[i]] < 0) {
+                remap[ordered[i]] = order.size();
+                order.add(ordered[i]);
+            }
+            ordered[i] = remap[ordered[i]];
+        }
+
+        for (VertexBuffer source : new ArrayList<>(mesh.getBufferList())) {
+            if (source.getBufferType() == VertexBuffer.Type.Index || source.getData() == null) {
+                continue;
+            }
+            final VertexBuffer target = new VertexBuffer(source.getBufferType());
+            target.setupData(source.getUsage(), source.getNumComponents(), source.getFormat(),
+                    VertexBuffer.createBuffer(source.getFormat(), source.getNumComponents(), order.size()));
+            target.setNormalized(source.isNormalized());
+            for (int i = 0; i < order.size(); i++) {
+                source.copyElement(order.get(i), target, i);
+            }
+            mesh.clearBuffer(source.getBufferType());
+            mesh.setBuffer(isTexCoord(target) ? quantize(target) : target);
+        }
+
+        final IndexBuffer target = order.size() <= 0xFFFF
+                ? new IndexShortBuffer(BufferUtils.createShortBuffer(ordered.length))
+                : new IndexIntBuffer(BufferUtils.createIntBuffer(ordered.length));
+        for (int i = 0; i < ordered.length; i++) {
+            target.put(i, ordered[i]);
+        }
+        mesh.clearBuffer(VertexBuffer.Type.Index);
+        mesh.setBuffer(VertexBuffer.Type.Index, 3, target.getFormat(), target.getBuffer());
+        mesh.updateCounts();
+        mesh.updateBound();
+    }
+
+    /**
+     * @return for each vertex, the first vertex with the same attributes
+     */
+    private static int[] weld(Mesh mesh) {
+        final List<VertexBuffer> buffers = new ArrayList<>();
+        int components = 0;
+        for (VertexBuffer buffer : mesh.getBufferList()) {
+            if (buffer.getBufferType() != VertexBuffer.Type.Index && buffer.getData() != null) {
+                buffers.add(buffer);
+                components += buffer.getNumComponents();
+            }
+        }
+        final Map<List<Object>, Integer> first = new HashMap<>();
+        final int[] weld = new int[mesh.getVertexCount()];
+        for (int vertex = 0; vertex < weld.length; vertex++) {
+            final List<Object> key = new ArrayList<>(components);
+            for (VertexBuffer buffer : buffers) {
+                for (int component = 0; component < buffer.getNumComponents(); component++) {
+                    key.add(buffer.getElementComponent(vertex, component));
+                }
+            }
+            final Integer welded = first.putIfAbsent(key, vertex);
+            weld[vertex] = welded == null ? vertex : welded;
+        }
+        return weld;
+    }
+
+    /**
+     * Forsyth, "Linear-Speed Vertex Cache Optimisation": greedily emits the
+     * triangle whose vertices score highest, favouring vertices recently in
+     * the cache and those with few triangles left.
+     */
+    private static int[] orderForCache(int[] indices, int vertexCount) {
+        final int triangleCount = indices.length / 3;
+        final int[] remaining = new int[vertexCount];
+        for (int index : indices) {
+            remaining[index]++;
+        }
+        final int[] offsets = new int[vertexCount + 1];
+        for (int vertex = 0; vertex < vertexCount; vertex++) {
+            offsets[vertex + 1] = offsets[vertex] + remaining[vertex];
+        }
+        final int[] adjacency = new int[indices.length];
+        final int[] fill = Arrays.copyOf(offsets, vertexCount);
+        for (int i = 0; i < indices.length; i++) {
+            adjacency[fill[indices[i]]++] = i / 3;
+        }
+
+        final int[] cachePosition = new int[vertexCount];
+        Arrays.fill(cachePosition, -1);
+        final float[] vertexScore = new float[vertexCount];
+        for (int vertex = 0; vertex < vertexCount; vertex++) {
+            vertexScore[vertex] = score(-1, remaining[vertex]);
+        }
+        final float[] triangleScore = new float[triangleCount];
+        for (int triangle = 0; triangle < triangleCount; triangle++) {
+            triangleScore[triangle] = vertexScore[indices[triangle * 3]]
+                    + vertexScore[indices[triangle * 3 + 1]] + vertexScore[indices[triangle * 3 + 2]];
+        }
+
+        final boolean[] emitted = new boolean[triangleCount];
+        final int[] ordered = new int[indices.length];
+        int[] cache = new int[0];
+        int best = -1;
+        int unemitted = 0;
+        for (int n = 0; n < triangleCount; n++) {
+            if (best < 0) {
+                // nothing left around the cache: restart at the first
+                // triangle not yet emitted, the cursor only moves forward
+                while (emitted[unemitted]) {
+                    unemitted++;
+                }
+                best = unemitted;
+            }
+            emitted[best] = true;
+            final int[] next = new int[Math.min(cache.length + 3, CACHE_SIZE + 3)];
+            int size = 0;
+            for (int corner = 0; corner < 3; corner++) {
+                final int vertex = indices[best * 3 + corner];
+                ordered[n * 3 + corner] = vertex;
+                next[size++] = vertex;
+                remaining[vertex]--;
+                // move the emitted triangle out of the live part of the list
+                final int end = offsets[vertex] + remaining[vertex];
+                for (int i = offsets[vertex]; i <= end; i++) {
+                    if (adjacency[i] == best) {
+                        adjacency[i] = adjacency[end];
+                        adjacency[end] = best;
+                        break;
+                    }
+                }
+            }
+            for (int vertex : cache) {
+                if (size < next.length && vertex != next[0] && vertex != next[1] && vertex != next[2]) {
+                    next[size++] = vertex;
+                }
+            }
+            for (int vertex : cache) {
+                cachePosition[vertex] = -1;
+            }
+            for (int i = 0; i < size; i++) {
+                cachePosition[next[i]] = i < CACHE_SIZE ? i : -1;
+                vertexScore[next[i]] = score(cachePosition[next[i]], remaining[next[i]]);
+            }
+
+            best = -1;
+            float bestScore = -1;
+            for (int i = 0; i < size; i++) {
+                final int vertex = next[i];
+                for (int j = offsets[vertex]; j < offsets[vertex] + remaining[vertex]; j++) {
+                    final int triangle = adjacency[j];
+                    triangleScore[triangle] = vertexScore[indices[triangle * 3]]
+                            + vertexScore[indices[triangle * 3 + 1]] + vertexScore[indices[triangle * 3 + 2]];
+                    if (triangleScore[triangle] > bestScore) {
+                        bestScore = triangleScore[triangle];
+                        best = triangle;
+                    }
+                }
+            }
+            cache = Arrays.copyOf(next, Math.min(size, CACHE_SIZE));
+        }
+        return ordered;
+    }
+
+    private static float score(int cachePosition, int remaining) {
+        if (remaining == 0) {
+            return -1;
+        }
+        float score = 0;
+        if (cachePosition >= 0) {
+            // the last triangle's vertices get a fixed score, so the next
+            // one isn't always built from the same edge
+            score = cachePosition < 3 ? 0.75f
+                    : (float) Math.pow(1 - (cachePosition - 3) / (float) (CACHE_SIZE - 3), 1.5);
+        }
+        return score + 2f * (float) Math.pow(remaining, -0.5);
+    }
+
+    /**
+     * @return transformed vertices per triangle with a FIFO cache, the
+     * average cache miss ratio once divided by the triangle count
+     */
+    private static int cacheMisses(int[] indices) {
+        final int[] fifo = new int[FIFO_SIZE];
+        Arrays.fill(fifo, -1);
+        int head = 0;
+        int misses = 0;
+        for (int index : indices) {
+            boolean hit = false;
+            for (int cached : fifo) {
+                hit |= cached == index;
+            }
+            if (!hit) {
+                fifo[head] = index;
+                head = (head + 1) % FIFO_SIZE;
+                misses++;
+            }
+        }
+        return misses;
+    }
+
+    private static boolean isTexCoord(VertexBuffer buffer) {
+        return buffer.getBufferType().name().startsWith("TexCoord") && buffer.getData() instanceof FloatBuffer;
+    }
+
+    /**
+     * @return the coordinates as normalized unsigned shorts when they all
+     * lie in [0, 1], the buffer as is when they tile
+     */
+    private static VertexBuffer quantize(VertexBuffer buffer) {
+        final FloatBuffer source = (FloatBuffer) buffer.getData();
+        for (int i = 0; i < source.limit(); i++) {
+            if (source.get(i) < -TEXCOORD_EPSILON || source.get(i) > 1 + TEXCOORD_EPSILON) {
+                return buffer;
+            }
+        }
+        final ShortBuffer target = BufferUtils.createShortBuffer(source.limit());
+        for (int i = 0; i < source.limit(); i++) {
+            target.put(i, (short) Math.round(Math.max(0, Math.min(1, source.get(i))) * 0xFFFF));
+        }
+        final VertexBuffer quantized = new VertexBuffer(buffer.getBufferType());
+        quantized.setupData(buffer.getUsage(), buffer.getNumComponents(), VertexBuffer.Format.UnsignedShort, target);
+        quantized.setNormalized(true);
+        return quantized;
+    }
+}
@@ -0,0 +1,342 @@
+/*
+ * Copyright (c) 2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package jme3test.jaimesascent.tools;
+
+import com.jme3.asset.AssetManager;
+import com.jme3.asset.TextureKey;
+import com.jme3.asset.plugins.FileLocator;
+import com.jme3.math.ColorRGBA;
+import com.jme3.system.JmeSystem;
+import com.jme3.texture.Image;
+import com.jme3.texture.image.ImageRaster;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ *
+ * Converts the textures of the game into DDS files with their mip chains
+ * precomputed, so the runtime uploads them without decoding or generating
+ * mips. Color textures are compressed to DXT1, the sky becomes one cube map,
+ * and textures that must stay exact (normal maps) are stored as
+ * uncompressed RGBA8. The GUI backgrounds are left to UiAtlasPacker. Run by
+ * the compileTextures task of the assets project:
+ * <pre>
+ * TextureCompiler &lt;assets folder&gt; &lt;output folder&gt;
+ * </pre>
+ * The output mirrors the asset paths, with a .dds extension.
+ */
+public class TextureCompiler {
+
+    private static final int DDSD_CAPS = 0x1;
+    private static final int DDSD_HEIGHT = 0x2;
+    private static final int DDSD_WIDTH = 0x4;
+    private static final int DDSD_PITCH = 0x8;
+    private static final int DDSD_PIXELFORMAT = 0x1000;
+    private static final int DDSD_MIPMAPCOUNT = 0x20000;
+    private static final int DDSD_LINEARSIZE = 0x80000;
+    private static final int DDPF_ALPHAPIXELS = 0x1;
+    private static final int DDPF_FOURCC = 0x4;
+    private static final int DDPF_RGB = 0x40;
+    private static final int DDSCAPS_COMPLEX = 0x8;
+    private static final int DDSCAPS_TEXTURE = 0x1000;
+    private static final int DDSCAPS_MIPMAP = 0x400000;
+    private static final int DDSCAPS2_CUBEMAP_ALL_FACES = 0x200 | 0xFC00;
+
+    private final AssetManager assetManager;
+    private final File output;
+
+    public TextureCompiler(File assets, File output) {
+        this.assetManager = JmeSystem.newAssetManager(
+                Thread.currentThread().getContextClassLoader().getResource("com/jme3/asset/Desktop.cfg"));
+        this.assetManager.registerLocator(assets.getAbsolutePath(), FileLocator.class);
+        this.output = output;
+    }
+
+    public static void main(String[] args) throws IOException {
+        final TextureCompiler compiler = new TextureCompiler(new File(args[0]), new File(args[1]));
+        // the face order and flip SkyFactory uses for six textures
+        compiler.compileCubeMap("Textures/Sky/Lagoon/lagoon.dds", "Textures/Sky/Lagoon/lagoon_west.jpg",
+                "Textures/Sky/Lagoon/lagoon_east.jpg", "Textures/Sky/Lagoon/lagoon_down.jpg",
+                "Textures/Sky/Lagoon/lagoon_up.jpg", "Textures/Sky/Lagoon/lagoon_south.jpg",
+                "Textures/Sky/Lagoon/lagoon_north.jpg");
+        compiler.compile("Models/Jaime/diffuseMap.jpg", true, true);
+        compiler.compile("Models/Jaime/NormalMap.png", false, true);
+    }
+
+    /**
+     * Writes the texture next to its path in the output, as DXT1 or RGBA8.
+     */
+    public void compile(String path, boolean compress, boolean mips) throws IOException {
+        final Image source = assetManager.loadTexture(new TextureKey(path, false)).getImage();
+        final List<int[]> levels = levels(source, mips);
+        final ByteBuffer data = compress
+                ? header(source.getWidth(), source.getHeight(), levels.size(), false)
+                : rgbaHeader(source.getWidth(), source.getHeight(), levels.size());
+        write(path, data, List.of(levels), source.getWidth(), source.getHeight(), compress);
+    }
+
+    /**
+     * Writes the six faces as one DXT1 cube map, in the order of the cube map
+     * image data.
+     */
+    public void compileCubeMap(String path, String... faces) throws IOException {
+        final List<List<int[]>> levels = new ArrayList<>();
+        Image first = null;
+        for (String face : faces) {
+            final Image image = assetManager.loadTexture(new TextureKey(face, true)).getImage();
+            first = first == null ? image : first;
+            levels.add(levels(image, true));
+        }
+        write(path, header(first.getWidth(), first.getHeight(), levels.get(0).size(), true), levels,
+                first.getWidth(), first.getHeight(), true);
+    }
+
+    private void write(String path, ByteBuffer header, List<List<int[]>> faces, int width, int height,
+            boolean compress) throws IOException {
+        int size = header.position();
+        for (List<int[]> levels : faces) {
+            for (int level = 0; level < levels.size(); level++) {
+                final int w = Math.max(1, width >> level);
+                final int h = Math.max(1, height >> level);
+                size += compress ? Math.max(1, (w + 3) / 4) * Math.max(1, (h + 3) / 4) * 8 : w * h * 4;
+            }
+        }
+        final ByteBuffer data = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        data.put(header.flip());
+        for (List<int[]> levels : faces) {
+            for (int level = 0; level < levels.size(); level++) {
+                final int w = Math.max(1, width >> level);
+                final int h = Math.max(1, height >> level);
+                if (compress) {
+                    compressDxt1(levels.get(level), w, h, data);
+                } else {
+                    for (int pixel : levels.get(level)) {
+                        data.putInt(pixel);
+                    }
+                }
+            }
+        }
+        final File file = new File(output, path.substring(0, path.lastIndexOf('.')) + ".dds");
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), data.array());
+    }
+
+    /**
+     * @return the pixels of each level, packed as little endian RGBA
+     */
+    private static List<int[]> levels(Image image, boolean mips) {
+        final ImageRaster raster = ImageRaster.create(image);
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int[] pixels = new int[width * height];
+        final ColorRGBA color = new ColorRGBA();
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                raster.getPixel(x, y, color);
+                pixels[y * width + x] = color.asIntABGR();
+            }
+        }
+        final List<int[]> levels = new ArrayList<>();
+        levels.add(pixels);
+        while (mips && (width > 1 || height > 1)) {
+            final int w = Math.max(1, width / 2);
+            final int h = Math.max(1, height / 2);
+            final int[] next = new int[w * h];
+            for (int y = 0; y < h; y++) {
+                for (int x = 0; x < w; x++) {
+                    // box filter over the 2x2 texels, clamped at odd edges
+                    final int x0 = Math.min(2 * x, width - 1);
+                    final int x1 = Math.min(2 * x + 1, width - 1);
+                    final int y0 = Math.min(2 * y, height - 1);
+                    final int y1 = Math.min(2 * y + 1, height - 1);
+                    next[y * w + x] = average(pixels[y0 * width + x0], pixels[y0 * width + x1],
+                            pixels[y1 * width + x0], pixels[y1 * width + x1]);
+                }
+            }
+            levels.add(next);
+            pixels = next;
+            width = w;
+            height = h;
+        }
+        return levels;
+    }
+
+    private static int average(int a, int b, int c, int d) {
+        int result = 0;
+        for (int shift = 0; shift < 32; shift += 8) {
+            final int sum = (a >>> shift & 0xFF) + (b >>> shift & 0xFF) + (c >>> shift & 0xFF) + (d >>> shift & 0xFF);
+            result |= ((sum + 2) / 4) << shift;
+        }
+        return result;
+    }
+
+    /**
+     * Range fit along the principal axis of each 4x4 block.
+     */
+    private static void compressDxt1(int[] pixels, int width, int height, ByteBuffer data) {
+        final float[][] block = new float[16][3];
+        final float[][] palette = new float[4][3];
+        for (int by = 0; by < Math.max(1, (height + 3) / 4); by++) {
+            for (int bx = 0; bx < Math.max(1, (width + 3) / 4); bx++) {
+                final float[] mean = new float[3];
+                for (int i = 0; i < 16; i++) {
+                    final int pixel = pixels[Math.min(by * 4 + i / 4, height - 1) * width
+                            + Math.min(bx * 4 + i % 4, width - 1)];
+                    for (int c = 0; c < 3; c++) {
+                        block[i][c] = pixel >>> (8 * c) & 0xFF;
+                        mean[c] += block[i][c] / 16f;
+                    }
+                }
+                final float[] axis = principalAxis(block, mean);
+                float min = Float.POSITIVE_INFINITY;
+                float max = Float.NEGATIVE_INFINITY;
+                for (float[] texel : block) {
+                    final float t = (texel[0] - mean[0]) * axis[0] + (texel[1] - mean[1]) * axis[1]
+                            + (texel[2] - mean[2]) * axis[2];
+                    min = Math.min(min, t);
+                    max = Math.max(max, t);
+                }
+                int color0 = rgb565(mean, axis, max);
+                int color1 = rgb565(mean, axis, min);
+                if (color0 < color1) {
+                    final int swap = color0;
+                    color0 = color1;
+                    color1 = swap;
+                }
+                unpack565(color0, palette[0]);
+                unpack565(color1, palette[1]);
+                for (int c = 0; c < 3; c++) {
+                    palette[2][c] = (2 * palette[0][c] + palette[1][c]) / 3f;
+                    palette[3][c] = (palette[0][c] + 2 * palette[1][c]) / 3f;
+                }
+                int indices = 0;
+                if (color0 != color1) {
+                    for (int i = 0; i < 16; i++) {
+                        int best = 0;
+                        float bestDistance = Float.POSITIVE_INFINITY;
+                        for (int p = 0; p < 4; p++) {
+                            float distance = 0;
+                            for (int c = 0; c < 3; c++) {
+                                final float delta = block[i][c] - palette[p][c];
+                                distance += delta * delta;
+                            }
+                            if (distance < bestDistance) {
+                                bestDistance = distance;
+                                best = p;
+                            }
+                        }
+                        indices |= best << (2 * i);
+                    }
+                }
+                data.putShort((short) color0).putShort((short) color1).putInt(indices);
+            }
+        }
+    }
+
+    private static float[] principalAxis(float[][] block, float[] mean) {
+        final float[] covariance = new float[6];
+        for (float[] texel : block) {
+            final float r = texel[0] - mean[0];
+            final float g = texel[1] - mean[1];
+            final float b = texel[2] - mean[2];
+            covariance[0] += r * r;
+            covariance[1] += r * g;
+            covariance[2] += r * b;
+            covariance[3] += g * g;
+            covariance[4] += g * b;
+            covariance[5] += b * b;
+        }
+        float[] axis = {1f, 1f, 1f};
+        for (int iteration = 0; iteration < 8; iteration++) {
+            final float r = covariance[0] * axis[0] + covariance[1] * axis[1] + covariance[2] * axis[2];
+            final float g = covariance[1] * axis[0] + covariance[3] * axis[1] + covariance[4] * axis[2];
+            final float b = covariance[2] * axis[0] + covariance[4] * axis[1] + covariance[5] * axis[2];
+            final float length = (float) Math.sqrt(r * r + g * g + b * b);
+            if (length < 1e-6f) {
+                break;
+            }
+            axis = new float[]{r / length, g / length, b / length};
+        }
+        final float length = (float) Math.sqrt(axis[0] * axis[0] + axis[1] * axis[1] + axis[2] * axis[2]);
+        return new float[]{axis[0] / length, axis[1] / length, axis[2] / length};
+    }
+
+    private static int rgb565(float[] mean, float[] axis, float t) {
+        final int r = Math.round(Math.max(0, Math.min(255, mean[0] + axis[0] * t)) * 31 / 255f);
+        final int g = Math.round(Math.max(0, Math.min(255, mean[1] + axis[1] * t)) * 63 / 255f);
+        final int b = Math.round(Math.max(0, Math.min(255, mean[2] + axis[2] * t)) * 31 / 255f);
+        return r << 11 | g << 5 | b;
+    }
+
+    private static void unpack565(int color, float[] store) {
+        store[0] = (color >> 11 & 0x1F) * 255 / 31f;
+        store[1] = (color >> 5 & 0x3F) * 255 / 63f;
+        store[2] = (color & 0x1F) * 255 / 31f;
+    }
+
+    private static ByteBuffer header(int width, int height, int mipCount, boolean cubeMap) {
+        final ByteBuffer header = baseHeader(width, height, mipCount,
+                DDSD_LINEARSIZE, Math.max(1, (width + 3) / 4) * Math.max(1, (height + 3) / 4) * 8);
+        header.putInt(32).putInt(DDPF_FOURCC).put(new byte[]{'D', 'X', 'T', '1'});
+        header.putInt(0).putInt(0).putInt(0).putInt(0).putInt(0);
+        return caps(header, mipCount, cubeMap);
+    }
+
+    private static ByteBuffer rgbaHeader(int width, int height, int mipCount) {
+        final ByteBuffer header = baseHeader(width, height, mipCount, DDSD_PITCH, width * 4);
+        header.putInt(32).putInt(DDPF_RGB | DDPF_ALPHAPIXELS).putInt(0);
+        header.putInt(32).putInt(0x000000FF).putInt(0x0000FF00).putInt(0x00FF0000).putInt(0xFF000000);
+        return caps(header, mipCount, false);
+    }
+
+    private static ByteBuffer baseHeader(int width, int height, int mipCount, int sizeFlag, int size) {
+        final ByteBuffer header = ByteBuffer.allocate(128).order(ByteOrder.LITTLE_ENDIAN);
+        header.put(new byte[]{'D', 'D', 'S', ' '}).putInt(124);
+        header.putInt(DDSD_CAPS | DDSD_HEIGHT | DDSD_WIDTH | DDSD_PIXELFORMAT | sizeFlag
+                | (mipCount > 1 ? DDSD_MIPMAPCOUNT : 0));
+        header.putInt(height).putInt(width).putInt(size).putInt(0).putInt(mipCount);
+        header.put(new byte[11 * 4]);
+        return header;
+    }
+
+    private static ByteBuffer caps(ByteBuffer header, int mipCount, boolean cubeMap) {
+        final boolean complex = mipCount > 1 || cubeMap;
+        header.putInt(DDSCAPS_TEXTURE | (mipCount > 1 ? DDSCAPS_MIPMAP : 0) | (complex ? DDSCAPS_COMPLEX : 0));
+        header.putInt(cubeMap ? DDSCAPS2_CUBEMAP_ALL_FACES : 0).putInt(0).putInt(0).putInt(0);
+        return header;
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package jme3test.jaimesascent.tools;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import javax.imageio.ImageIO;
+import jme3test.jaimesascent.ui.UIAtlas;
+
+/**
+ *
+ * Packs the GUI backgrounds into the UI atlas and writes its index, so every
+ * {@link jme3test.jaimesascent.ui.UISprite} samples the same texture. Run by
+ * the packUiAtlas task of the assets project:
+ * <pre>
+ * UiAtlasPacker &lt;assets folder&gt; &lt;output folder&gt;
+ * </pre>
+ * Sprites go on shelves, tallest first, at the atlas width that wastes the
+ * least area. Each one is surrounded by a copy of its edge pixels, so the
+ * bilinear filter never reads a neighbour. The cursor stays out, the
+ * operating system draws it from its own image.
+ */
+public class UiAtlasPacker {
+
+    private static final String[] SPRITES = {"panel_01", "button_01", "button_02", "button_03", "fill"};
+    private static final int PADDING = 2;
+
+    public static void main(String[] args) throws IOException {
+        final File assets = new File(args[0]);
+        final File output = new File(args[1]);
+        final List<Sprite> sprites = new ArrayList<>();
+        long separate = 0;
+        for (String name : SPRITES) {
+            final BufferedImage image = ImageIO.read(new File(assets, UIAtlas.FOLDER + name + ".png"));
+            sprites.add(new Sprite(name, image));
+            separate += 4L * image.getWidth() * image.getHeight();
+        }
+        sprites.sort(Comparator.comparingInt((Sprite sprite) -> sprite.height).thenComparingInt(sprite -> sprite.width)
+                .reversed());
+
+        int widest = 0;
+        int total = 0;
+        for (Sprite sprite : sprites) {
+            widest = Math.max(widest, sprite.width);
+            total += sprite.width;
+        }
+        int bestWidth = widest;
+        long bestArea = Long.MAX_VALUE;
+        for (int width = widest; width <= total; width += 4) {
+            final long area = (long) width * pack(sprites, width);
+            if (area < bestArea) {
+                bestArea = area;
+                bestWidth = width;
+            }
+        }
+        final int height = pack(sprites, bestWidth);
+
+        final BufferedImage atlas = new BufferedImage(bestWidth, height, BufferedImage.TYPE_INT_ARGB);
+        final StringBuilder index = new StringBuilder();
+        for (Sprite sprite : sprites) {
+            sprite.copyTo(atlas);
+            index.append(sprite.name).append('=').append(sprite.x + PADDING).append(' ').append(sprite.y + PADDING)
+                    .append(' ').append(sprite.image.getWidth()).append(' ').append(sprite.image.getHeight())
+                    .append('\n');
+        }
+        final File texture = new File(output, UIAtlas.TEXTURE);
+        texture.getParentFile().mkdirs();
+        ImageIO.write(atlas, "png", texture);
+        Files.write(new File(output, UIAtlas.INDEX).toPath(), index.toString().getBytes(StandardCharsets.ISO_8859_1));
+        System.out.printf("%s: %d sprites in %dx%d, %d KB of RGBA8 instead of %d KB in %d textures%n",
+                UIAtlas.TEXTURE, sprites.size(), bestWidth, height, bestArea * 4 / 1024, separate / 1024,
+                sprites.size());
+    }
+
+    /**
+     * Places the sprites on shelves, each into the first shelf tall and wide
+     * enough for it.
+     *
+     * @return the height of the atlas
+     */
+    private static int pack(List<Sprite> sprites, int width) {
+        final List<int[]> shelves = new ArrayList<>(); // y, height, used width
+        int height = 0;
+        for (Sprite sprite : sprites) {
+            int[] shelf = null;
+            for (int[] candidate : shelves) {
+                if (candidate[1] >= sprite.height && candidate[2] + sprite.width <= width) {
+                    shelf = candidate;
+                    break;
+                }
+            }
+            if (shelf == null) {
+                shelf = new int[]{height, sprite.height, 0};
+                shelves.add(shelf);
+                height += sprite.height;
+            }
+            sprite.x = shelf[2];
+            sprite.y = shelf[0];
+            shelf[2] += sprite.width;
+        }
+        return height;
+    }
+
+    private static final class Sprite {
+
+        private final String name;
+        private final BufferedImage image;
+        private final int width;
+        private final int height;
+        private int x;
+        private int y;
+
+        private Sprite(String name, BufferedImage image) {
+            this.name = name;
+            this.image = image;
+            this.width = image.getWidth() + 2 * PADDING;
+            this.height = image.getHeight() + 2 * PADDING;
+        }
+
+        /**
+         * Copies the image into its cell, extending the edges into the padding.
+         */
+        private void copyTo(BufferedImage atlas) {
+            final int[] row = new int[width];
+            for (int cy = 0; cy < height; cy++) {
+                final int sy = Math.max(0, Math.min(image.getHeight() - 1, cy - PADDING));
+                for (int cx = 0; cx < width; cx++) {
+                    final int sx = Math.max(0, Math.min(image.getWidth() - 1, cx - PADDING));
+                    row[cx] = image.getRGB(sx, sy);
+                }
+                atlas.setRGB(x, y + cy, width, 1, row, 0, width);
+            }
+        }
+    }
+}